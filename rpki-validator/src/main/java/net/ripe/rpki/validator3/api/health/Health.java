@@ -41,5 +41,6 @@ class Health {
     List<HealthController.TaHealth> trustAnchorReady;
     Map<String, Boolean> bgpDumpReady;
     Map<String, String> databaseStatus;
+    Map<String, String> reindexStatus;
     BuildInformation buildInformation; 
 }
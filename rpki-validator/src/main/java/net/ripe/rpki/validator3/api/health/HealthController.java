@@ -101,7 +101,7 @@ public class HealthController {
 
 
             return ResponseEntity.ok(ApiResponse.<Health>builder()
-                .data(Health.of("OK", trustAnchorReady, bgpDumpReady, databaseStatus, buildInformation))
+                .data(Health.of("OK", trustAnchorReady, bgpDumpReady, databaseStatus, storage.getReindexStatus(), buildInformation))
                 .build());
         } catch (Exception e) {
             return ResponseEntity.ok(ApiResponse.<String>builder()
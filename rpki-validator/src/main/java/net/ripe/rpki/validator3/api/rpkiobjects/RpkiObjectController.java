@@ -48,7 +48,6 @@ import net.ripe.rpki.commons.crypto.cms.ghostbuster.GhostbustersCms;
 import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
 import net.ripe.rpki.commons.crypto.cms.roa.RoaCms;
 import net.ripe.rpki.commons.crypto.crl.X509Crl;
-import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
 import net.ripe.rpki.commons.crypto.x509cert.X509CertificateInformationAccessDescriptor;
 import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificate;
 import net.ripe.rpki.commons.crypto.x509cert.X509RouterCertificate;
@@ -56,6 +55,7 @@ import net.ripe.rpki.commons.validation.ValidationResult;
 import net.ripe.rpki.validator3.api.ValidatorApi;
 import net.ripe.rpki.validator3.api.ApiResponse;
 import net.ripe.rpki.validator3.api.PublicApiCall;
+import net.ripe.rpki.validator3.domain.validation.DecodedObjectCache;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
@@ -118,6 +118,9 @@ public class RpkiObjectController {
     @Autowired
     private Storage storage;
 
+    @Autowired
+    private DecodedObjectCache decodedObjectCache;
+
     @GetMapping(path = "/")
     public ResponseEntity<ApiResponse<Stream<RpkiObj>>> all() {
         List<RpkiObj> objects = storage.readTx(tx -> this.trustAnchors.findAll(tx))
@@ -181,14 +184,13 @@ public class RpkiObjectController {
     }
 
 
-    private static Stream<CertificateRepositoryObject> objectStream(Stream<byte[]> byteStream, String fileExtension) {
-        return byteStream.
+    private Stream<CertificateRepositoryObject> objectStream(Stream<RpkiObject> objectStream, String fileExtension) {
+        return objectStream.
                 collect(Collectors.toList()).
                 parallelStream().
-                map(bytes -> {
-                    ValidationResult vr = newValidationResult("whatever." + fileExtension);
-                    return CertificateRepositoryObjectFactory.createCertificateRepositoryObject(bytes, vr);
-                });
+                map(rpkiObject -> decodedObjectCache.get(rpkiObject, CertificateRepositoryObject.class, "whatever." + fileExtension)).
+                filter(Optional::isPresent).
+                map(Optional::get);
     }
 
     @GetMapping(path = "/certified.csv", produces = "text/csv; charset=UTF-8")
@@ -272,8 +274,9 @@ public class RpkiObjectController {
         try (final CSVWriter writer = new CSVWriter(response.getWriter())) {
             writer.writeNext(new String[]{"Subject", "Resources"});
 
-            Stream<byte[]> byteStream = storage.readTx(tx -> rpkiObjects.streamObjects(tx, RpkiObject.Type.CER));
-            objectStream(byteStream, "cer")
+            // The objects are collected within the transaction, the stream of the store cannot outlive it
+            Stream<CertificateRepositoryObject> certificates = storage.readTx(tx -> objectStream(rpkiObjects.streamObjects(tx, RpkiObject.Type.CER), "cer"));
+            certificates
                     .forEachOrdered(c -> {
                         if (c instanceof X509ResourceCertificate) {
                             final X509ResourceCertificate cert = (X509ResourceCertificate) c;
@@ -317,7 +320,7 @@ public class RpkiObjectController {
                                                                          final ValidationResult validationResult,
                                                                          final Class<T> clazz,
                                                                          final Function<T, RpkiObj> create) {
-        return rpkiObject.get(clazz, validationResult).map(create).orElse(null);
+        return decodedObjectCache.get(rpkiObject, clazz, validationResult).map(create).orElse(null);
     }
 
     private static String location(final RpkiObject.Type objectType, final SortedSet<String> locations) {
@@ -35,10 +35,16 @@ import net.ripe.rpki.validator3.api.InternalApiCall;
 import net.ripe.rpki.validator3.domain.cleanup.ValidationRunCleanupService;
 import net.ripe.rpki.validator3.storage.xodus.Xodus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Map;
 
 @InternalApiCall
@@ -68,4 +74,18 @@ public class XodusController {
         return xodus.getStat();
     }
 
+    /**
+     * Stream a backup of the database, which can be restored on a new validator with
+     * <code>rpki.validator.storage.restore.archive</code>. The backup is written by the request thread, so that
+     * large databases are not limited by the timeout of asynchronous requests.
+     */
+    @GetMapping(path = "/backup", produces = "application/gzip")
+    public void backup(HttpServletResponse response) throws IOException {
+        final String fileName = "rpki-validator-db-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC).format(Instant.now()) + ".tar.gz";
+        log.info("Streaming a backup of the database as {}", fileName);
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        xodus.backup(response.getOutputStream());
+    }
+
 }
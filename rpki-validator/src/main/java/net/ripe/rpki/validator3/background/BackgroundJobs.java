@@ -106,6 +106,10 @@ public class BackgroundJobs extends JobListenerSupport {
             futureDate(10, SECOND),
             typicalSchedule().withIntervalInMinutes(10));
 
+        schedule(RpkiObjectScrubJob.class,
+            futureDate(6, MINUTE),
+            typicalSchedule().withIntervalInMinutes(1));
+
         schedule(CertificateTreeObjectExpirationValidationJob.class,
             futureDate(1, MINUTE),
             typicalSchedule().withIntervalInMinutes(1));
@@ -35,6 +35,8 @@ import net.ripe.rpki.commons.validation.ValidationOptions;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties("rpki.validator")
 public class ValidationConfig {
@@ -56,6 +58,39 @@ public class ValidationConfig {
     @Setter
     private boolean rsyncOnly;
 
+    /**
+     * Reuse the validation result of certificate authorities whose manifest did not change since the previous
+     * tree validation run and whose objects did not expire in the meantime.
+     */
+    @Getter
+    @Setter
+    private boolean incrementalValidation = true;
+
+    /**
+     * Validated objects are only marked reachable again once their previous mark is older than this interval, so
+     * that an unchanged tree does not rewrite the reachability of every object on every validation run. Must be
+     * (much) shorter than the object cleanup grace duration.
+     */
+    @Getter
+    @Setter
+    private Duration reachabilityRefreshInterval = Duration.ofHours(1);
+
+    /**
+     * Maximum duration of a tree validation run, certificate authorities that were not reached in time keep the
+     * results (of their complete subtree) of the previous run. Zero disables the budget.
+     */
+    @Getter
+    @Setter
+    private Duration validationTimeBudget = Duration.ZERO;
+
+    /**
+     * While a tree validation run is in progress, publish the results of the certificate authorities validated so
+     * far (combined with the previous results of the others) at this interval. Zero disables partial publication.
+     */
+    @Getter
+    @Setter
+    private Duration partialPublicationInterval = Duration.ofMinutes(1);
+
     public ValidationOptions validationOptions() {
         if (earlyWarningValidation) {
             return ValidationOptions.paranoidTestValidations();
@@ -58,6 +58,8 @@ public class ErrorCodes {
 
     public static final String MANIFEST_ALL_ENTRIES_VALID = "manifest.all.entries.valid";
 
+    public static final String VALIDATION_TIME_BUDGET_EXCEEDED = "validation.time.budget.exceeded";
+
     public static final String UNHANDLED_EXCEPTION = "unhandled.exception";
 
     private ErrorCodes() {
@@ -29,6 +29,8 @@
  */
 package net.ripe.rpki.validator3.domain.cleanup;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.api.util.InstantWithoutNanos;
 import net.ripe.rpki.validator3.storage.Storage;
@@ -53,20 +55,32 @@ public class RpkiObjectCleanupService {
 
     private final Storage storage;
 
+    private final Counter scanned;
+    private final Counter deleted;
 
     public RpkiObjectCleanupService(@Value("${rpki.validator.rpki.object.cleanup.grace.duration}") String cleanupGraceDuration,
-                                    Storage storage) {
+                                    Storage storage,
+                                    MeterRegistry registry) {
         this.cleanupGraceDuration = Duration.parse(cleanupGraceDuration);
         log.info("Configured to remove objects older than {}", cleanupGraceDuration);
         this.storage = storage;
+        this.scanned = Counter.builder("rpkivalidator.rpki.objects.cleanup.scanned")
+            .description("Number of RPKI objects whose reachability was examined by the cleanup")
+            .register(registry);
+        this.deleted = Counter.builder("rpkivalidator.rpki.objects.cleanup.deleted")
+            .description("Number of unreachable RPKI objects deleted by the cleanup")
+            .register(registry);
     }
 
     public long cleanupRpkiObjects() throws Exception {
         final InstantWithoutNanos unreachableSince = InstantWithoutNanos.now().minus(cleanupGraceDuration);
-        final Pair<Long, Long> deleted = Time.timed(() -> rpkiObjects.deleteUnreachableObjects(unreachableSince));
-        log.info("Removed {} RPKI objects that have not been marked reachable since {}, took {}ms", deleted.getLeft(), unreachableSince, deleted.getRight());
+        final Pair<RpkiObjects.UnreachableCleanup, Long> cleanup = Time.timed(() -> rpkiObjects.deleteUnreachableObjects(unreachableSince));
+        scanned.increment(cleanup.getLeft().getScanned());
+        deleted.increment(cleanup.getLeft().getDeleted());
+        log.info("Removed {} of {} RPKI objects that have not been marked reachable since {}, took {}ms",
+            cleanup.getLeft().getDeleted(), cleanup.getLeft().getScanned(), unreachableSince, cleanup.getRight());
         storage.gc();
-        return deleted.getLeft();
+        return cleanup.getLeft().getDeleted();
     }
 
 }
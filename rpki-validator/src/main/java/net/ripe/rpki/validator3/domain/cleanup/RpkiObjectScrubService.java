@@ -0,0 +1,157 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.cleanup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.validator3.storage.Storage;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.storage.stores.RpkiObjects;
+import net.ripe.rpki.validator3.util.Sha256;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Slowly walks over all stored data to detect corruption at rest (and report it through metrics):
+ *
+ * - The checksums of the stored values of all maps are verified. When only a fraction of the reads verify the
+ *   checksum, corruption is not necessarily noticed when data is read.
+ * - The SHA-256 hash of every stored RPKI object is checked, since validation trusts the hash that was computed
+ *   when an object was stored instead of hashing every object again on every validation run.
+ */
+@Service
+@Slf4j
+public class RpkiObjectScrubService {
+
+    private final RpkiObjects rpkiObjects;
+    private final Storage storage;
+    private final int valuesPerRun;
+
+    private final Counter valuesScrubbed;
+    private final Counter checksumMismatches;
+    private final Counter objectsScrubbed;
+    private final Counter hashMismatches;
+    private final Counter unreadable;
+
+    private Key nextKey;
+
+    @Autowired
+    public RpkiObjectScrubService(RpkiObjects rpkiObjects,
+                                  Storage storage,
+                                  @Value("${rpki.validator.storage.scrub.values-per-run:10000}") int valuesPerRun,
+                                  MeterRegistry registry) {
+        this.rpkiObjects = rpkiObjects;
+        this.storage = storage;
+        this.valuesPerRun = valuesPerRun;
+        this.valuesScrubbed = Counter.builder("rpkivalidator.storage.values.scrubbed")
+            .description("Number of stored values whose checksum was verified")
+            .register(registry);
+        this.checksumMismatches = Counter.builder("rpkivalidator.storage.values.corrupted")
+            .description("Number of stored values found to be corrupted")
+            .register(registry);
+        this.objectsScrubbed = Counter.builder("rpkivalidator.rpki.objects.scrubbed")
+            .description("Number of stored RPKI objects whose SHA-256 hash was checked")
+            .register(registry);
+        this.hashMismatches = Counter.builder("rpkivalidator.rpki.objects.corrupted")
+            .description("Number of stored RPKI objects found to be corrupted")
+            .tag("reason", "hash")
+            .register(registry);
+        this.unreadable = Counter.builder("rpkivalidator.rpki.objects.corrupted")
+            .description("Number of stored RPKI objects found to be corrupted")
+            .tag("reason", "unreadable")
+            .register(registry);
+    }
+
+    /**
+     * Verify the checksums of the next batch of stored values and the hashes of the next batch of RPKI objects,
+     * continuing where the previous run stopped and starting over once everything was checked.
+     *
+     * @return the number of corrupted values and objects found in this batch.
+     */
+    public synchronized long scrub() {
+        if (valuesPerRun <= 0) {
+            return 0;
+        }
+        return scrubChecksums() + scrubRpkiObjects();
+    }
+
+    private long scrubChecksums() {
+        final Storage.ChecksumScrub scrub = storage.scrubChecksums(valuesPerRun);
+        valuesScrubbed.increment(scrub.getChecked());
+        checksumMismatches.increment(scrub.getCorrupted());
+        if (scrub.isCompleted()) {
+            log.info("Finished verifying the checksums of all stored values");
+        }
+        return scrub.getCorrupted();
+    }
+
+    /**
+     * The checksums of the objects are verified by {@link #scrubChecksums()}, reads that fail here only happen when
+     * the read skipped the checksum of a corrupted value.
+     */
+    private long scrubRpkiObjects() {
+        return storage.readTx(tx -> {
+            final List<Key> keys = rpkiObjects.findKeysFrom(tx, nextKey, valuesPerRun + 1);
+            nextKey = keys.size() > valuesPerRun ? keys.get(valuesPerRun) : null;
+
+            long corrupted = keys.stream()
+                .limit(valuesPerRun)
+                .filter(key -> {
+                    objectsScrubbed.increment();
+                    Optional<RpkiObject> object;
+                    try {
+                        object = rpkiObjects.get(tx, key);
+                    } catch (RuntimeException e) {
+                        log.error("Stored RPKI object {} is corrupted: {}", key, e.getMessage());
+                        unreadable.increment();
+                        return true;
+                    }
+                    if (object.isPresent() && !Arrays.equals(Sha256.hash(object.get().getEncoded()), key.getBytes())) {
+                        log.error("Stored RPKI object {} does not match its SHA-256 hash", key);
+                        hashMismatches.increment();
+                        return true;
+                    }
+                    return false;
+                })
+                .count();
+            if (nextKey == null) {
+                log.info("Finished checking the hashes of all stored RPKI objects");
+            }
+            return corrupted;
+        });
+    }
+}
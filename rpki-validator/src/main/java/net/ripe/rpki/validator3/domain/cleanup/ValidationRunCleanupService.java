@@ -66,7 +66,7 @@ public class ValidationRunCleanupService {
         Long t = Time.timed(() -> {
             // Delete all validation runs older than `cleanupGraceDuration` that have a later validation run.
             oldCount.set(storage.writeTx(tx -> validationRuns.removeOldValidationRuns(tx, completedBefore)));
-            orphanCount.set(storage.writeTx(tx -> validationRuns.removeOrphanValidationRunAssociations(tx)));
+            orphanCount.set(validationRuns.removeOrphanValidationRunAssociations());
         });
         log.info("Removed {} old validation runs and {} orphans in {}ms", oldCount.get(), orphanCount.get(), t);
         storage.gc();
@@ -74,6 +74,22 @@ public class TrustAnchorMetricsService {
                 .update(vr, durationMs);
     }
 
+    /**
+     * Count the certificate authorities of a tree validation run whose result of the previous run was reused, and
+     * the ones that were validated.
+     */
+    public void updateCertificateAuthorities(TrustAnchor ta, int reused, int validated) {
+        final String uri = ta.getLocations().size() > 0 ? ta.getLocations().get(0) : null;
+        if (uri == null) {
+            return;
+        }
+
+        final CertificateTreeValidationMetrics metrics = certificateTreeValidationMetrics
+                .computeIfAbsent(uri, key -> new CertificateTreeValidationMetrics(ta));
+        metrics.reusedCertificateAuthorityCount.increment(reused);
+        metrics.validatedCertificateAuthorityCount.increment(validated);
+    }
+
     private class CertificateTreeValidationMetrics {
         private final String rsyncPrefetchUri;
 
@@ -87,6 +103,9 @@ public class TrustAnchorMetricsService {
         private final Counter validationRunFailedCount;
         private final Counter validationRunSuccessCount;
 
+        private final Counter reusedCertificateAuthorityCount;
+        private final Counter validatedCertificateAuthorityCount;
+
         private final Timer validationRunDuration;
 
         public CertificateTreeValidationMetrics(TrustAnchor trustAnchor) {
@@ -113,6 +132,16 @@ public class TrustAnchorMetricsService {
                     .tag("succeeded", "false")
                     .register(registry);
 
+            this.reusedCertificateAuthorityCount = Counter.builder("rpkivalidator.validation.certificate.authorities")
+                    .description("Number of certificate authorities for which the result of the previous validation run was reused or that were validated.")
+                    .tag("trust_anchor", rsyncPrefetchUri)
+                    .tag("result", "reused")
+                    .register(registry);
+            this.validatedCertificateAuthorityCount = Counter.builder("rpkivalidator.validation.certificate.authorities")
+                    .tag("trust_anchor", rsyncPrefetchUri)
+                    .tag("result", "validated")
+                    .register(registry);
+
             Gauge.builder("rpkivalidator.validated.objects", objectCount::get)
                     .description("Status of the objects under this trust anchor (identical to numbers on front page of web interface)")
                     .tag("status", "total")
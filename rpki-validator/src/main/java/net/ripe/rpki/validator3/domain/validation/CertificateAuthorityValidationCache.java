@@ -0,0 +1,209 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import lombok.Value;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.commons.validation.objectvalidators.CertificateRepositoryObjectValidationContext;
+import net.ripe.rpki.validator3.domain.validation.ValidatedRpkiObjects.Accumulator;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.util.Sha256;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers the outcome of validating every certificate authority of a trust anchor, so that the next tree
+ * validation run can reuse it for CAs whose manifest (and therefore CRL) did not change.
+ *
+ * Only the CA's own objects are cached, child CAs are looked up separately when the tree is walked, so a change
+ * deep in the tree only invalidates the CAs that actually published something new.
+ *
+ * The results of the previous run are also used as a fallback for CAs that have not been validated (yet) in the
+ * current run, to publish partial results while the tree is walked and to keep the results of subtrees that were
+ * skipped because the validation run exceeded its time budget.
+ */
+class CertificateAuthorityValidationCache {
+
+    private final Map<Long, Map<Key, CachedResult>> resultsByTrustAnchor = new ConcurrentHashMap<>();
+
+    Run startRun(long trustAnchorId, boolean reuseEnabled) {
+        Map<Key, CachedResult> previous = resultsByTrustAnchor.get(trustAnchorId);
+        return new Run(trustAnchorId, reuseEnabled, previous == null ? Collections.emptyMap() : previous);
+    }
+
+    void forget(long trustAnchorId) {
+        resultsByTrustAnchor.remove(trustAnchorId);
+    }
+
+    /**
+     * A CA is identified by its certificate and the resources it was validated with, since inherited resources
+     * depend on the parent CA. The resources are hashed as well, so that the key has a fixed size however many
+     * resources the CA holds.
+     */
+    static Key certificateAuthorityKey(CertificateRepositoryObjectValidationContext context) {
+        return Key.of(Sha256.hash(context.getCertificate().getEncoded()))
+                .concat(Key.of(Sha256.hash(context.getResources().toString().getBytes(UTF_8))));
+    }
+
+    /**
+     * The validated objects, checks and child CAs of a single certificate authority, valid until the earliest
+     * expiration (or next update) of any of its objects. Results with failures are kept as a fallback, but are
+     * never reused since the failures may resolve themselves without a new manifest, for example when a missing
+     * object is retrieved later.
+     */
+    @Value(staticConstructor = "of")
+    static class CachedResult {
+        Key manifestKey;
+        Key crlKey;
+        Instant validUntil;
+        ValidationResult validationResult;
+        Accumulator accumulator;
+        List<CertificateRepositoryObjectValidationContext> childContexts;
+        List<Pair<Key, String>> entryLocations;
+
+        boolean isReusableFor(Key currentManifestKey, Instant now) {
+            return !validationResult.hasFailures() && manifestKey.equals(currentManifestKey) && isValidAt(now);
+        }
+
+        boolean isValidAt(Instant now) {
+            return validUntil != null && now.isBefore(validUntil);
+        }
+    }
+
+    class Run {
+        private final long trustAnchorId;
+        private final boolean reuseEnabled;
+        private final Map<Key, CachedResult> previous;
+        private final Map<Key, CachedResult> current = new ConcurrentHashMap<>();
+        private final Set<Key> completed = ConcurrentHashMap.newKeySet();
+        private final Set<Key> skipped = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger reused = new AtomicInteger();
+        private final AtomicInteger validated = new AtomicInteger();
+
+        private Run(long trustAnchorId, boolean reuseEnabled, Map<Key, CachedResult> previous) {
+            this.trustAnchorId = trustAnchorId;
+            this.reuseEnabled = reuseEnabled;
+            this.previous = previous;
+        }
+
+        boolean hasPreviousResults() {
+            return !previous.isEmpty();
+        }
+
+        Optional<CachedResult> lookup(Key certificateAuthorityKey) {
+            return reuseEnabled ? Optional.ofNullable(previous.get(certificateAuthorityKey)) : Optional.empty();
+        }
+
+        void completed(Key certificateAuthorityKey) {
+            completed.add(certificateAuthorityKey);
+        }
+
+        void skipped(Key certificateAuthorityKey) {
+            skipped.add(certificateAuthorityKey);
+        }
+
+        void reused(Key certificateAuthorityKey, CachedResult result) {
+            reused.incrementAndGet();
+            current.put(certificateAuthorityKey, result);
+        }
+
+        void validated(Key certificateAuthorityKey, CachedResult result) {
+            validated.incrementAndGet();
+            current.put(certificateAuthorityKey, result);
+        }
+
+        int getReusedCount() {
+            return reused.get();
+        }
+
+        int getValidatedCount() {
+            return validated.get();
+        }
+
+        int getSkippedCount() {
+            return skipped.size();
+        }
+
+        /**
+         * @return the objects of the previous run of all CAs that have not been completed by this run so far, leaving
+         * out the ones that expired since.
+         */
+        Accumulator previousResultsOfUncompleted(Instant now) {
+            Accumulator result = new Accumulator();
+            previous.forEach((key, cached) -> {
+                if (!completed.contains(key) && cached.isValidAt(now)) {
+                    result.addAll(cached.getAccumulator());
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Keep the results of the previous run for the subtrees of all skipped CAs, so they are published (and
+         * remembered for the next run) as if they were validated again. Expired results are dropped together with
+         * the subtree below them.
+         *
+         * @return the objects of the previous run of the skipped subtrees.
+         */
+        Accumulator carryOverSkipped(Instant now) {
+            Accumulator result = new Accumulator();
+            Deque<Key> todo = new ArrayDeque<>(skipped);
+            while (!todo.isEmpty()) {
+                Key key = todo.pop();
+                CachedResult cached = previous.get(key);
+                if (cached != null && cached.isValidAt(now) && current.putIfAbsent(key, cached) == null) {
+                    result.addAll(cached.getAccumulator());
+                    cached.getChildContexts().forEach(child -> todo.push(certificateAuthorityKey(child)));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Replace the cached results of the trust anchor with the ones of this run, this drops CAs that are no
+         * longer part of the tree.
+         */
+        void complete() {
+            resultsByTrustAnchor.put(trustAnchorId, current);
+        }
+    }
+}
@@ -29,6 +29,7 @@
  */
 package net.ripe.rpki.validator3.domain.validation;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedSet;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
@@ -63,15 +64,16 @@ import net.ripe.rpki.validator3.storage.stores.Settings;
 import net.ripe.rpki.validator3.storage.stores.TrustAnchors;
 import net.ripe.rpki.validator3.storage.stores.ValidationRuns;
 import net.ripe.rpki.validator3.util.Bench;
-import net.ripe.rpki.validator3.util.Sha256;
 import net.ripe.rpki.validator3.util.Time;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -89,6 +91,7 @@ import static net.ripe.rpki.commons.validation.ValidationString.VALIDATOR_RPKI_R
 import static net.ripe.rpki.commons.validation.ValidationString.VALIDATOR_TRUST_ANCHOR_CERTIFICATE_AVAILABLE;
 import static net.ripe.rpki.commons.validation.ValidationString.VALIDATOR_TRUST_ANCHOR_CERTIFICATE_RRDP_NOTIFY_URI_OR_REPOSITORY_URI_PRESENT;
 import static net.ripe.rpki.validator3.domain.ErrorCodes.MANIFEST_ALL_ENTRIES_VALID;
+import static net.ripe.rpki.validator3.domain.ErrorCodes.VALIDATION_TIME_BUDGET_EXCEEDED;
 import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
 import static net.ripe.rpki.validator3.storage.data.RpkiRepository.Type.RRDP;
 import static net.ripe.rpki.validator3.storage.data.RpkiRepository.Type.RSYNC;
@@ -112,6 +115,11 @@ public class CertificateTreeValidationService {
     private final TrustAnchors trustAnchors;
     private final Storage storage;
     private final ValidatedRpkiObjects validatedRpkiObjects;
+    private final DecodedObjectCache decodedObjectCache;
+    private final VerificationResultCache verificationResultCache;
+    private final ValidationExecutor validationExecutor;
+
+    private final CertificateAuthorityValidationCache certificateAuthorityValidationCache = new CertificateAuthorityValidationCache();
 
     @Autowired
     public CertificateTreeValidationService(RpkiObjects rpkiObjects,
@@ -123,7 +131,10 @@ public class CertificateTreeValidationService {
                                             ValidatedRpkiObjects validatedRpkiObjects,
                                             Storage storage,
                                             TrustAnchorMetricsService taMetricsService,
-                                            ValidationConfig validationConfig) {
+                                            ValidationConfig validationConfig,
+                                            DecodedObjectCache decodedObjectCache,
+                                            VerificationResultCache verificationResultCache,
+                                            ValidationExecutor validationExecutor) {
         this.rpkiObjects = rpkiObjects;
         this.rpkiRepositories = rpkiRepositories;
         this.settings = settings;
@@ -134,6 +145,9 @@ public class CertificateTreeValidationService {
         this.storage = storage;
         this.taMetricsService = taMetricsService;
         this.validationConfig = validationConfig;
+        this.decodedObjectCache = decodedObjectCache;
+        this.verificationResultCache = verificationResultCache;
+        this.validationExecutor = validationExecutor;
 
     }
 
@@ -161,6 +175,7 @@ public class CertificateTreeValidationService {
             Bench.mark0("validateTa " + trustAnchor.getName(), () -> validateTa(trustAnchor));
         } else {
             log.error("Couldn't find trust anchor {}", trustAnchorId);
+            certificateAuthorityValidationCache.forget(trustAnchorId);
         }
     }
 
@@ -169,6 +184,8 @@ public class CertificateTreeValidationService {
         long begin = System.currentTimeMillis();
 
         final Map<URI, RpkiRepository> registeredRepositories = new ConcurrentHashMap<>();
+        final CertificateAuthorityValidationCache.Run cache = certificateAuthorityValidationCache.startRun(
+                trustAnchor.key().asLong(), validationConfig.isIncrementalValidation());
 
         final Ref<TrustAnchor> trustAnchorRef = storage.readTx(tx -> trustAnchors.makeRef(tx, trustAnchor.key()));
         final CertificateTreeValidationRun validationRun = new CertificateTreeValidationRun(trustAnchorRef);
@@ -200,10 +217,25 @@ public class CertificateTreeValidationService {
             }
 
             TrustAnchorData trustAnchorData = TrustAnchorData.of(trustAnchor.getId(), trustAnchor.getName());
-            CertificateAuthorityValidationResult certificateAuthorityValidationResult = validateCertificateAuthority(trustAnchorData, registeredRepositories, context);
-            validations.addAll(certificateAuthorityValidationResult.getAllValidationResults());
+            final ValidationSink sink = createSink(trustAnchor, trustAnchorRef, cache);
+            validationExecutor.executeForTrustAnchor(trustAnchor.getName(), () -> {
+                validateCertificateAuthority(trustAnchorData, registeredRepositories, cache, sink, context);
+                return null;
+            });
+            validations.addAll(sink.getValidationResult());
 
-            Accumulator accumulator = certificateAuthorityValidationResult.getAllValidatedObjects();
+            Accumulator accumulator = sink.getAccumulator();
+            if (cache.getSkippedCount() > 0) {
+                accumulator.addAll(cache.carryOverSkipped(Instant.now()));
+                log.warn("TA {} exceeded the validation time budget of {}, kept the previous results of {} certificate authorities and their children",
+                        trustAnchor.getName(), validationConfig.getValidationTimeBudget(), cache.getSkippedCount());
+            }
+            validations.warnIfTrue(cache.getSkippedCount() > 0, VALIDATION_TIME_BUDGET_EXCEEDED,
+                    validationConfig.getValidationTimeBudget().toString(), String.valueOf(cache.getSkippedCount()));
+            cache.complete();
+            log.info("TA {} reused the results of {} unchanged certificate authorities, validated {} certificate authorities",
+                    trustAnchor.getName(), cache.getReusedCount(), cache.getValidatedCount());
+            taMetricsService.updateCertificateAuthorities(trustAnchor, cache.getReusedCount(), cache.getValidatedCount());
 
             if (accumulator.isEmpty()) {
                 if (isValidationRunCompleted(validations)) {
@@ -218,15 +250,19 @@ public class CertificateTreeValidationService {
                 log.warn("TA {} does not contain any valid, non-expired objects", trustAnchor.getName());
             }
 
+            // Only objects that were not marked reachable recently need to be written in the write transaction below
+            final InstantWithoutNanos reachableSince = InstantWithoutNanos.now().minus(validationConfig.getReachabilityRefreshInterval());
+            final List<Key> notRecentlyReachable = storage.readTx(tx -> rpkiObjects.findNotMarkedReachableSince(tx, accumulator.getKeys(), reachableSince));
+
             storage.writeTx0(tx -> {
                 validationRuns.add(tx, validationRun);
-                Long t = Time.timed(() -> accumulator.forEach(key -> validationRuns.associateRpkiObjectKey(tx, validationRun, key)));
+                Long t = Time.timed(() -> validationRuns.associateRpkiObjectKeys(tx, validationRun, accumulator.getKeys()));
                 logForDuration("Associated {} objects with the validation run {} in {}ms", accumulator.size(), validationRun.key(), t);
 
                 markTaObjectsReachable(tx, trustAnchorCertificate);
 
-                Long tmr = Time.timed(() -> rpkiObjects.markReachable(tx, accumulator.getKeys()));
-                logForDuration("Marked {} objects as reachable in {}ms", accumulator.size(), tmr);
+                Long tmr = Time.timed(() -> rpkiObjects.markReachable(tx, notRecentlyReachable));
+                logForDuration("Marked {} of {} objects as reachable in {}ms", notRecentlyReachable.size(), accumulator.size(), tmr);
 
                 if (isValidationRunCompleted(validations)) {
                     trustAnchor.markInitialCertificateTreeValidationRunCompleted();
@@ -249,12 +285,35 @@ public class CertificateTreeValidationService {
         }
     }
 
+    /**
+     * The time budget and partial publication only apply when the previous results of the trust anchor are known,
+     * otherwise skipped or not yet validated parts of the tree would be published without any objects.
+     */
+    private ValidationSink createSink(TrustAnchor trustAnchor, Ref<TrustAnchor> trustAnchorRef, CertificateAuthorityValidationCache.Run cache) {
+        final String location = trustAnchor.getLocations().get(0);
+        if (!cache.hasPreviousResults()) {
+            return new ValidationSink(location, cache, null, null, partialResults -> {});
+        }
+
+        final Duration budget = validationConfig.getValidationTimeBudget();
+        final Duration publicationInterval = validationConfig.getPartialPublicationInterval();
+        return new ValidationSink(
+                location,
+                cache,
+                budget.isZero() ? null : Instant.now().plus(budget),
+                publicationInterval.isZero() ? null : publicationInterval,
+                partialResults -> {
+                    log.info("Publishing partial results of the tree validation of {}", trustAnchor.getName());
+                    validatedRpkiObjects.updateByKey(trustAnchorRef, partialResults);
+                });
+    }
+
     private void markTaObjectsReachable(Tx.Write tx, X509ResourceCertificate taCertificate) {
         final InstantWithoutNanos now = InstantWithoutNanos.now();
         rpkiObjects.findLatestMftByAKI(tx, taCertificate.getSubjectKeyIdentifier())
             .ifPresent(manifest -> {
                 rpkiObjects.markReachable(tx, manifest.key(), now);
-                manifest.get(ManifestCms.class, newValidationResult("ta-manifest.mft"))
+                decodedObjectCache.get(manifest, ManifestCms.class, "ta-manifest.mft")
                     .ifPresent(manifestCms ->
                         rpkiObjects.findObjectsInManifest(tx, manifestCms)
                             .forEach((entry, rpkiObject) ->
@@ -268,9 +327,35 @@ public class CertificateTreeValidationService {
                 .noneMatch(check -> check.getStatus() != ValidationStatus.PASSED && VALIDATOR_RPKI_REPOSITORY_PENDING.equals(check.getKey()));
     }
 
-    private CertificateAuthorityValidationResult validateCertificateAuthority(
+    /**
+     * Validates the objects of a certificate authority, hands them to the sink and then continues with its child
+     * certificate authorities. Children are only visited when the objects of their parent were accepted. Once the
+     * time budget of the run is exceeded no new certificate authorities are visited.
+     */
+    private void validateCertificateAuthority(
             final TrustAnchorData trustAnchor,
             final Map<URI, RpkiRepository> registeredRepositories,
+            final CertificateAuthorityValidationCache.Run cache,
+            final ValidationSink sink,
+            final CertificateRepositoryObjectValidationContext context
+    ) {
+        final Key certificateAuthorityKey = CertificateAuthorityValidationCache.certificateAuthorityKey(context);
+        if (sink.isPastDeadline()) {
+            cache.skipped(certificateAuthorityKey);
+            return;
+        }
+
+        final CertificateAuthorityValidationResult result = validateCertificateAuthorityObjects(trustAnchor, registeredRepositories, cache, certificateAuthorityKey, context);
+        sink.add(certificateAuthorityKey, result.getValidationResult(), result.getAccumulator());
+        result.getChildContexts().parallelStream()
+                .forEach(childContext -> validateCertificateAuthority(trustAnchor, registeredRepositories, cache, sink, childContext));
+    }
+
+    private CertificateAuthorityValidationResult validateCertificateAuthorityObjects(
+            final TrustAnchorData trustAnchor,
+            final Map<URI, RpkiRepository> registeredRepositories,
+            final CertificateAuthorityValidationCache.Run cache,
+            final Key certificateAuthorityKey,
             final CertificateRepositoryObjectValidationContext context
     ) {
         ValidationResult validations = newValidationResult(context.getLocation());
@@ -299,7 +384,14 @@ public class CertificateTreeValidationService {
                 }
             }
 
-            final Optional<ManifestCms> maybeManifest = manifestObject.flatMap(x -> x.get(ManifestCms.class, validations));
+            if (manifestObject.isPresent()) {
+                Optional<CertificateAuthorityValidationResult> reused = reuseCachedResult(cache, certificateAuthorityKey, manifestObject.get().key());
+                if (reused.isPresent()) {
+                    return reused.get();
+                }
+            }
+
+            final Optional<ManifestCms> maybeManifest = manifestObject.flatMap(x -> decodedObjectCache.get(x, ManifestCms.class, validations));
 
             validations.rejectIfTrue(manifestObject.isPresent() &&
                             rpkiRepository.getStatus() == RpkiRepository.Status.FAILED &&
@@ -322,20 +414,25 @@ public class CertificateTreeValidationService {
             Map.Entry<String, byte[]> crlEntry = crlEntries.get(0);
             URI crlUri = manifestUri.resolve(crlEntry.getKey());
 
-            Optional<RpkiObject> crlObject = storage.readTx(tx -> rpkiObjects.findBySha256(tx, crlEntry.getValue()));
+            // Resolve the CRL and all other manifest entries in a single read transaction
+            final Map<String, Pair<RpkiObject, SortedSet<String>>> manifestEntries = Bench.mark(trustAnchor.getName(), "findObjectsWithLocationsInManifest", () ->
+                storage.readTx(tx -> rpkiObjects.findObjectsWithLocationsInManifest(tx, manifest)));
+
+            Optional<RpkiObject> crlObject = Optional.ofNullable(manifestEntries.get(crlEntry.getKey())).map(Pair::getLeft);
             validations.rejectIfFalse(crlObject.isPresent(), VALIDATOR_CRL_FOUND, crlUri.toASCIIString());
             if (validations.hasFailureForCurrentLocation()) {
                 return result;
             }
 
             validations.setLocation(new ValidationLocation(crlUri));
-            final Optional<X509Crl> crl = crlObject.flatMap(x -> x.get(X509Crl.class, validations));
+            final Optional<X509Crl> crl = crlObject.flatMap(x -> decodedObjectCache.get(x, X509Crl.class, validations));
             if (validations.hasFailureForCurrentLocation()) {
                 return result;
             }
 
             final X509Crl x509Crl = crl.get();
-            x509Crl.validate(crlUri.toASCIIString(), context, null, validationConfig.validationOptions(), validations);
+            verificationResultCache.validate(crlObject.get().key(), certificateAuthorityKey, x509Crl, null, validations, crlValidations ->
+                x509Crl.validate(crlUri.toASCIIString(), context, null, validationConfig.validationOptions(), crlValidations));
             if (validations.hasFailureForCurrentLocation()) {
                 return result;
             }
@@ -352,30 +449,57 @@ public class CertificateTreeValidationService {
             result.add(trustAnchor, manifestObject.get().key(), manifest, manifestUri);
 
             CertificateAuthorityValidationResult validatedManifestEntries
-                    = validateManifestEntries(trustAnchor, registeredRepositories, context, manifestUri, manifest, crlUri, x509Crl);
+                    = validateManifestEntries(trustAnchor, context, certificateAuthorityKey.concat(crlObject.get().key()), manifestUri, manifest, manifestEntries, crlUri, x509Crl);
             result.addAll(validatedManifestEntries);
+
+            cache.validated(certificateAuthorityKey, result.toCachedResult(manifestObject.get().key(), crlObject.get().key()));
         } catch (Exception e) {
             validations.error(ErrorCodes.UNHANDLED_EXCEPTION, e.toString(), ExceptionUtils.getStackTrace(e));
         }
         return result;
     }
 
+    /**
+     * Reuse the result of the previous run for this CA when its manifest did not change, none of its objects expired
+     * and all of them are still present at their expected location. Child CAs are still visited, since they are
+     * published independently of their parent.
+     */
+    private Optional<CertificateAuthorityValidationResult> reuseCachedResult(
+            final CertificateAuthorityValidationCache.Run cache,
+            final Key certificateAuthorityKey,
+            final Key manifestKey
+    ) {
+        Optional<CertificateAuthorityValidationCache.CachedResult> cached = cache.lookup(certificateAuthorityKey)
+                .filter(c -> c.isReusableFor(manifestKey, Instant.now()));
+        if (!cached.isPresent()) {
+            return Optional.empty();
+        }
+
+        boolean allAtExpectedLocation = storage.readTx(tx -> cached.get().getEntryLocations().stream()
+                .allMatch(entry -> rpkiObjects.getLocations(tx, entry.getKey()).contains(entry.getValue())));
+        if (!allAtExpectedLocation) {
+            return Optional.empty();
+        }
+
+        cache.reused(certificateAuthorityKey, cached.get());
+        return Optional.of(CertificateAuthorityValidationResult.fromCachedResult(cached.get()));
+    }
+
     private CertificateAuthorityValidationResult validateManifestEntries(
             TrustAnchorData trustAnchor,
-            final Map<URI, RpkiRepository> registeredRepositories,
             CertificateRepositoryObjectValidationContext context,
+            Key issuerKey,
             URI manifestUri,
             ManifestCms manifest,
+            Map<String, Pair<RpkiObject, SortedSet<String>>> manifestEntries,
             URI crlUri,
             X509Crl x509Crl
     ) {
-        CertificateAuthorityValidationResult result = manifest.getFiles().entrySet().parallelStream()
-                .map(entry -> validateManifestEntry(trustAnchor, registeredRepositories, context, manifestUri, crlUri, x509Crl, entry))
-                .collect(
-                        CertificateAuthorityValidationResult::empty,
-                        CertificateAuthorityValidationResult::addAll,
-                        CertificateAuthorityValidationResult::addAll
-                );
+        List<CertificateAuthorityValidationResult> entryResults = manifest.getFiles().entrySet().parallelStream()
+                .map(entry -> validateManifestEntry(trustAnchor, context, issuerKey, manifestUri, manifestEntries, crlUri, x509Crl, entry))
+                .collect(toList());
+        CertificateAuthorityValidationResult result = CertificateAuthorityValidationResult.empty();
+        entryResults.forEach(result::addAll);
 
         if (!validationConfig.isStrictValidation()) {
             return result;
@@ -386,7 +510,7 @@ public class CertificateTreeValidationService {
         boolean hasManifestEntryFailures = result.getValidationResult().hasFailureForCurrentLocation();
         result.getValidationResult().warnIfTrue(hasManifestEntryFailures, MANIFEST_ALL_ENTRIES_VALID);
         if (hasManifestEntryFailures) {
-            // RFC 6486bis: drop all validated objects from this CA (and its children) since there
+            // RFC 6486bis: drop all validated objects from this CA (and do not visit its children) since there
             // was at least one manifest entry validation failure on this manifest.
             return CertificateAuthorityValidationResult.of(result.getValidationResult());
         } else {
@@ -396,9 +520,10 @@ public class CertificateTreeValidationService {
 
     private CertificateAuthorityValidationResult validateManifestEntry(
             TrustAnchorData trustAnchor,
-            final Map<URI, RpkiRepository> registeredRepositories,
             CertificateRepositoryObjectValidationContext context,
+            Key issuerKey,
             URI manifestUri,
+            Map<String, Pair<RpkiObject, SortedSet<String>>> manifestEntries,
             URI crlUri,
             X509Crl crl,
             Map.Entry<String, byte[]> entry
@@ -410,20 +535,20 @@ public class CertificateTreeValidationService {
         byte[] entryHash = entry.getValue();
         URI entryLocation = manifestUri.resolve(entryFilename);
 
-        Optional<RpkiObject> object = storage.readTx(tx -> rpkiObjects.findBySha256(tx, entryHash));
-        validations.rejectIfFalse(object.isPresent(), VALIDATOR_MANIFEST_ENTRY_FOUND, entryFilename);
+        Pair<RpkiObject, SortedSet<String>> object = manifestEntries.get(entryFilename);
+        validations.rejectIfFalse(object != null, VALIDATOR_MANIFEST_ENTRY_FOUND, entryFilename);
         if (validations.hasFailureForCurrentLocation()) {
             return result;
         }
 
-        RpkiObject rpkiObject = object.get();
-        boolean hashMatches = Arrays.equals(Sha256.hash(rpkiObject.getEncoded()), entryHash);
+        RpkiObject rpkiObject = object.getLeft();
+        boolean hashMatches = rpkiObject.hasSha256(entryHash);
         validations.rejectIfFalse(hashMatches, VALIDATOR_MANIFEST_ENTRY_HASH_MATCHES, entryFilename);
         if (validations.hasFailureForCurrentLocation()) {
             return result;
         }
 
-        SortedSet<String> locations = storage.readTx(tx -> rpkiObjects.getLocations(tx, rpkiObject.key()));
+        SortedSet<String> locations = object.getRight();
         validations.rejectIfFalse(locations.contains(entryLocation.toASCIIString()), VALIDATOR_REPOSITORY_NOT_AT_EXPECTED_LOCATION, entryLocation.toASCIIString(), String.join(", ", locations));
         if (validations.hasFailureForCurrentLocation()) {
             return result;
@@ -433,14 +558,15 @@ public class CertificateTreeValidationService {
         validations.setLocation(new ValidationLocation(entryLocation));
 
         final Optional<CertificateRepositoryObject> maybeCertificateRepositoryObject = Bench.mark(trustAnchor.getName(),
-                "rpkiObject.get", () -> rpkiObject.get(CertificateRepositoryObject.class, validations));
+                "rpkiObject.get", () -> decodedObjectCache.get(rpkiObject, CertificateRepositoryObject.class, validations));
         if (validations.hasFailureForCurrentLocation()) {
             return result;
         }
 
         CertificateRepositoryObject certificateRepositoryObject = maybeCertificateRepositoryObject.get();
         Bench.mark0(trustAnchor.getName(), "certificateRepositoryObject.validate", () ->
-                certificateRepositoryObject.validate(entryLocation.toASCIIString(), context, crl, crlUri, validationConfig.validationOptions(), validations)
+                verificationResultCache.validate(rpkiObject.key(), issuerKey, certificateRepositoryObject, crl, validations, objectValidations ->
+                        certificateRepositoryObject.validate(entryLocation.toASCIIString(), context, crl, crlUri, validationConfig.validationOptions(), objectValidations))
         );
         if (validations.hasFailureForCurrentLocation()) {
             return result;
@@ -452,7 +578,7 @@ public class CertificateTreeValidationService {
             X509ResourceCertificate resourceCertificate = (X509ResourceCertificate) certificateRepositoryObject;
             if (resourceCertificate.isCa()) {
                 CertificateRepositoryObjectValidationContext childContext = context.createChildContext(entryLocation, resourceCertificate);
-                result.addChild(validateCertificateAuthority(trustAnchor, registeredRepositories, childContext));
+                result.addChildContext(childContext);
             }
         }
 
@@ -482,46 +608,61 @@ public class CertificateTreeValidationService {
                 });
     }
 
-    @Value(staticConstructor = "of")
+    /**
+     * The validated objects and checks of a single certificate authority, together with the child certificate
+     * authorities that still have to be visited.
+     */
+    @Value
     static class CertificateAuthorityValidationResult {
         ValidationResult validationResult;
-        Accumulator accumulator = new Accumulator();
-        List<CertificateAuthorityValidationResult> children = new ArrayList<>();
+        Accumulator accumulator;
+        List<CertificateRepositoryObjectValidationContext> childContexts;
+        List<Pair<Key, String>> entryLocations;
+
+        public static CertificateAuthorityValidationResult of(ValidationResult validationResult) {
+            return new CertificateAuthorityValidationResult(validationResult, new Accumulator(), new ArrayList<>(), new ArrayList<>());
+        }
 
         public static CertificateAuthorityValidationResult empty() {
             return CertificateAuthorityValidationResult.of(newValidationResult("<empty>"));
         }
 
+        /**
+         * The cached result is shared with later runs, so the returned result must not be modified.
+         */
+        public static CertificateAuthorityValidationResult fromCachedResult(CertificateAuthorityValidationCache.CachedResult cached) {
+            return new CertificateAuthorityValidationResult(cached.getValidationResult(), cached.getAccumulator(), cached.getChildContexts(), cached.getEntryLocations());
+        }
+
         public void add(TrustAnchorData trustAnchor, Key key, CertificateRepositoryObject object, URI location) {
             this.accumulator.add(trustAnchor, key, object, ImmutableSortedSet.of(location.toASCIIString()));
+            this.entryLocations.add(Pair.of(key, location.toASCIIString()));
         }
 
         public void addAll(CertificateAuthorityValidationResult that) {
             this.validationResult.addAll(that.validationResult);
             this.accumulator.addAll(that.accumulator);
-            this.children.addAll(that.children);
-        }
-
-        public void addChild(CertificateAuthorityValidationResult result) {
-            this.children.add(result);
+            this.childContexts.addAll(that.childContexts);
+            this.entryLocations.addAll(that.entryLocations);
         }
 
-        public ValidationResult getAllValidationResults() {
-            ValidationResult result = newValidationResult(this.validationResult.getCurrentLocation());
-            result.addAll(this.validationResult);
-            for (CertificateAuthorityValidationResult child : children) {
-                result.addAll(child.getAllValidationResults());
-            }
-            return result;
+        public void addChildContext(CertificateRepositoryObjectValidationContext childContext) {
+            this.childContexts.add(childContext);
         }
 
-        public Accumulator getAllValidatedObjects() {
-            Accumulator result = new Accumulator();
-            result.addAll(this.accumulator);
-            for (CertificateAuthorityValidationResult child : children) {
-                result.addAll(child.getAllValidatedObjects());
-            }
-            return result;
+        /**
+         * @return the result of this CA without its children.
+         */
+        public CertificateAuthorityValidationCache.CachedResult toCachedResult(Key manifestKey, Key crlKey) {
+            return CertificateAuthorityValidationCache.CachedResult.of(
+                    manifestKey,
+                    crlKey,
+                    accumulator.getEarliestObjectExpiration(),
+                    validationResult,
+                    accumulator,
+                    ImmutableList.copyOf(childContexts),
+                    ImmutableList.copyOf(entryLocations)
+            );
         }
     }
 }
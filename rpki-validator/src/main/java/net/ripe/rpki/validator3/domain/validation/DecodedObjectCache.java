@@ -0,0 +1,112 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import net.ripe.rpki.commons.crypto.CertificateRepositoryObject;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
+
+/**
+ * Size-bounded cache of decoded RPKI objects, keyed by the SHA-256 of their DER encoding.
+ *
+ * The content of an object is immutable for a given hash, so an entry never has to be invalidated. Only objects
+ * that were decoded without any failure or warning are cached, so a cache hit never hides a validation check.
+ */
+@Component
+public class DecodedObjectCache {
+
+    private final Cache<Key, CertificateRepositoryObject> cache;
+
+    @Autowired
+    public DecodedObjectCache(@Value("${rpki.validator.decoded-object-cache.size:20000}") long maximumSize,
+                              MeterRegistry registry) {
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+        GuavaCacheMetrics.monitor(registry, cache, "rpkivalidator.decoded.objects");
+    }
+
+    /**
+     * Same as {@link RpkiObject#get(Class, ValidationResult)}, but DER-parses the object only when it is not cached yet.
+     */
+    public <T extends CertificateRepositoryObject> Optional<T> get(RpkiObject rpkiObject, Class<T> clazz, ValidationResult validationResult) {
+        final CertificateRepositoryObject cached = cache.getIfPresent(rpkiObject.key());
+        if (cached == null) {
+            return decode(rpkiObject, clazz, validationResult);
+        }
+
+        validationResult.rejectIfNull(cached, "rpki.object.parsable");
+        if (clazz.isInstance(cached)) {
+            return Optional.of(clazz.cast(cached));
+        }
+        return typeMismatch(clazz, cached, validationResult);
+    }
+
+    public <T extends CertificateRepositoryObject> Optional<T> get(RpkiObject rpkiObject, Class<T> clazz, String location) {
+        return get(rpkiObject, clazz, newValidationResult(location));
+    }
+
+    private <T extends CertificateRepositoryObject> Optional<T> decode(RpkiObject rpkiObject, Class<T> clazz, ValidationResult validationResult) {
+        final ValidationResult temporary = newValidationResult(validationResult.getCurrentLocation());
+        try {
+            final Optional<CertificateRepositoryObject> decoded = rpkiObject.get(CertificateRepositoryObject.class, temporary);
+            if (!decoded.isPresent()) {
+                return Optional.empty();
+            }
+            if (!temporary.hasFailures() && temporary.getWarnings().isEmpty()) {
+                cache.put(rpkiObject.key(), decoded.get());
+            }
+            if (clazz.isInstance(decoded.get())) {
+                return Optional.of(clazz.cast(decoded.get()));
+            }
+            return typeMismatch(clazz, decoded.get(), temporary);
+        } finally {
+            validationResult.addAll(temporary);
+        }
+    }
+
+    private static <T extends CertificateRepositoryObject> Optional<T> typeMismatch(Class<T> clazz, CertificateRepositoryObject object, ValidationResult validationResult) {
+        validationResult.error("rpki.object.type.matches", clazz.getSimpleName(), object.getClass().getSimpleName());
+        return Optional.empty();
+    }
+}
@@ -41,7 +41,6 @@ import net.ripe.rpki.validator3.domain.RpkiObjectUtils;
 import net.ripe.rpki.validator3.domain.metrics.RsyncMetricsService;
 import net.ripe.rpki.validator3.rrdp.RrdpService;
 import net.ripe.rpki.validator3.storage.Storage;
-import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
@@ -54,7 +53,6 @@ import net.ripe.rpki.validator3.storage.stores.RpkiObjects;
 import net.ripe.rpki.validator3.storage.stores.RpkiRepositories;
 import net.ripe.rpki.validator3.storage.stores.TrustAnchors;
 import net.ripe.rpki.validator3.storage.stores.ValidationRuns;
-import net.ripe.rpki.validator3.util.Hex;
 import net.ripe.rpki.validator3.util.Rsync;
 import net.ripe.rpki.validator3.util.RsyncFactory;
 import net.ripe.rpki.validator3.util.Time;
@@ -423,26 +421,25 @@ public class RpkiRepositoryValidationService {
                 RpkiObjectUtils.createRpkiObject(pendingObject.getLeft(), pendingObject.getRight())
         ).collect(Collectors.toList());
 
-        storage.writeTx0((tx) -> converted.forEach((maybeRpkiObject) ->
-            storeObject(tx, validationRun, maybeRpkiObject, counter)
-        ));
+        final List<Pair<String, RpkiObject>> objectsWithLocations = new ArrayList<>(converted.size());
+        converted.forEach((maybeRpkiObject) ->
+            collectObject(validationRun, maybeRpkiObject, objectsWithLocations, counter)
+        );
+        storage.writeTx0((tx) -> rpkiObjects.putAll(tx, objectsWithLocations));
 
         return counter.get();
     }
 
-    private void storeObject(Tx.Write tx, RpkiRepositoryValidationRun validationRun,
-                             Either<ValidationResult, Pair<String, RpkiObject>> maybeRpkiObject,
-                             AtomicInteger counter) {
+    private void collectObject(RpkiRepositoryValidationRun validationRun,
+                               Either<ValidationResult, Pair<String, RpkiObject>> maybeRpkiObject,
+                               List<Pair<String, RpkiObject>> objectsWithLocations,
+                               AtomicInteger counter) {
         if (maybeRpkiObject.isLeft()) {
             final ValidationResult value = maybeRpkiObject.left().value();
             validationRun.addChecks(value);
             log.debug("parsing {} failed: {}", value.getCurrentLocation().getName(), value);
         } else {
-            final Pair<String, RpkiObject> p = maybeRpkiObject.right().value();
-            final RpkiObject object = p.getRight();
-            final String key = Hex.format(object.getSha256());
-            final String location = p.getLeft();
-            rpkiObjects.put(tx, object, location);
+            objectsWithLocations.add(maybeRpkiObject.right().value());
             counter.incrementAndGet();
         }
     }
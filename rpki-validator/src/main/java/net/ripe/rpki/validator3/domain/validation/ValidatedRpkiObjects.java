@@ -49,10 +49,8 @@ import net.ripe.rpki.validator3.api.SearchTerm;
 import net.ripe.rpki.validator3.api.Sorting;
 import net.ripe.rpki.validator3.domain.ValidatedRoaPrefix;
 import net.ripe.rpki.validator3.storage.Storage;
-import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
-import net.ripe.rpki.validator3.storage.data.RpkiObject;
 import net.ripe.rpki.validator3.storage.data.RpkiRepository;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.stores.RpkiObjects;
@@ -71,8 +69,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
@@ -135,15 +131,6 @@ public class ValidatedRpkiObjects {
         notifyListeners();
     }
 
-    private Stream<RpkiObject> streamByType(Tx.Read tx, Collection<Key> rpkiObjectsKeys, RpkiObject.Type type) {
-        final Set<Key> byType = rpkiObjects.getPkByType(tx, type);
-        return rpkiObjectsKeys.stream()
-            .filter(byType::contains)
-            .map(k -> rpkiObjects.get(tx, k))
-            .filter(Optional::isPresent)
-            .map(Optional::get);
-    }
-
     public void remove(TrustAnchor trustAnchor) {
         long trustAnchorId = trustAnchor.key().asLong();
         Locks.locked(dataLock.writeLock(), () -> validatedObjectsByTrustAnchor.remove(trustAnchorId));
@@ -0,0 +1,165 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs the CPU bound parts of validation on dedicated fork-join pools instead of the common pool, so that
+ * parallel streams used during validation neither compete with other users of the common pool nor can use more
+ * than the configured number of threads.
+ *
+ * At most <code>concurrentTrustAnchors</code> trust anchors are validated at the same time. Trust anchors that have
+ * to wait are admitted in the order they arrived, so a large trust anchor cannot starve the others. Each trust anchor
+ * gets its own pool with an equal share of the configured parallelism.
+ */
+@Component
+@Slf4j
+public class ValidationExecutor {
+
+    private final int trustAnchorParallelism;
+    private final Semaphore trustAnchorPermits;
+    private final ForkJoinPool sharedPool;
+    private final Set<ForkJoinPool> trustAnchorPools = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ValidationExecutor(@Value("${rpki.validator.validation.parallelism:0}") int parallelism,
+                              @Value("${rpki.validator.validation.concurrent-trust-anchors:2}") int concurrentTrustAnchors,
+                              MeterRegistry registry) {
+        final int effectiveParallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        final int effectiveConcurrentTrustAnchors = Math.max(1, concurrentTrustAnchors);
+        this.trustAnchorParallelism = Math.max(1, effectiveParallelism / effectiveConcurrentTrustAnchors);
+        this.trustAnchorPermits = new Semaphore(effectiveConcurrentTrustAnchors, true);
+        this.sharedPool = newPool("validation-shared", effectiveParallelism);
+        log.info("validating at most {} trust anchors concurrently using {} threads each, {} threads for other validation work",
+            effectiveConcurrentTrustAnchors, trustAnchorParallelism, effectiveParallelism);
+
+        Gauge.builder("rpkivalidator.validation.executor.queued", this, ValidationExecutor::getQueuedTaskCount)
+            .description("Number of validation tasks waiting for a thread")
+            .register(registry);
+        Gauge.builder("rpkivalidator.validation.executor.active", this, ValidationExecutor::getActiveTaskCount)
+            .description("Number of threads currently running validation tasks")
+            .register(registry);
+        Gauge.builder("rpkivalidator.validation.executor.waiting.trust.anchors", trustAnchorPermits, Semaphore::getQueueLength)
+            .description("Number of trust anchors waiting for their turn to be validated")
+            .register(registry);
+    }
+
+    /**
+     * Runs the validation of a single trust anchor. Parallel streams used by <code>task</code> run on a pool that is
+     * private to this trust anchor.
+     */
+    public <T> T executeForTrustAnchor(String trustAnchorName, Supplier<T> task) {
+        try {
+            trustAnchorPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to validate " + trustAnchorName, e);
+        }
+        final ForkJoinPool pool = newPool("validation-" + trustAnchorName.replaceAll("\\s+", "-"), trustAnchorParallelism);
+        trustAnchorPools.add(pool);
+        try {
+            return run(pool, task);
+        } finally {
+            trustAnchorPools.remove(pool);
+            pool.shutdown();
+            trustAnchorPermits.release();
+        }
+    }
+
+    /**
+     * Runs validation work that does not belong to a single trust anchor, such as parsing an RRDP snapshot.
+     */
+    public <T> T execute(Supplier<T> task) {
+        return run(sharedPool, task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sharedPool.shutdownNow();
+    }
+
+    private long getQueuedTaskCount() {
+        long queued = sharedPool.getQueuedSubmissionCount() + sharedPool.getQueuedTaskCount();
+        for (ForkJoinPool pool : trustAnchorPools) {
+            queued += pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        }
+        return queued;
+    }
+
+    private long getActiveTaskCount() {
+        long active = sharedPool.getActiveThreadCount();
+        for (ForkJoinPool pool : trustAnchorPools) {
+            active += pool.getActiveThreadCount();
+        }
+        return active;
+    }
+
+    private static <T> T run(ForkJoinPool pool, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, pool).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for validation to finish", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ForkJoinPool newPool(String name, int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + thread.getPoolIndex());
+            thread.setContextClassLoader(ValidationExecutor.class.getClassLoader());
+            return thread;
+        }, null, false);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.domain.validation.ValidatedRpkiObjects.Accumulator;
+import net.ripe.rpki.validator3.storage.data.Key;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
+
+/**
+ * Collects the validated objects and validation checks of all certificate authorities of a trust anchor while the
+ * certificate tree is walked in parallel. Every certificate authority appends its own results once, so no
+ * intermediate tree of results has to be kept and merged at the end of the run.
+ *
+ * When the previous results of the trust anchor are known the sink can publish partial results while the tree is
+ * walked (the CAs completed so far combined with the previous results of all others) and tells the walk when the
+ * time budget of the run is exceeded.
+ */
+class ValidationSink {
+    private final Accumulator accumulator = new Accumulator();
+    private final ValidationResult validationResult;
+    private final CertificateAuthorityValidationCache.Run cache;
+    private final Instant deadline;
+    private final Duration publicationInterval;
+    private final Consumer<Accumulator> partialPublisher;
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private volatile Instant nextPublication;
+
+    /**
+     * @param deadline            null when the run has no time budget.
+     * @param publicationInterval null when no partial results should be published.
+     */
+    ValidationSink(String location, CertificateAuthorityValidationCache.Run cache, Instant deadline, Duration publicationInterval, Consumer<Accumulator> partialPublisher) {
+        this.validationResult = newValidationResult(location);
+        this.cache = cache;
+        this.deadline = deadline;
+        this.publicationInterval = publicationInterval;
+        this.partialPublisher = partialPublisher;
+        this.nextPublication = publicationInterval == null ? null : Instant.now().plus(publicationInterval);
+    }
+
+    void add(Key certificateAuthorityKey, ValidationResult checks, Accumulator validatedObjects) {
+        synchronized (this) {
+            validationResult.addAll(checks);
+            accumulator.addAll(validatedObjects);
+            cache.completed(certificateAuthorityKey);
+        }
+        maybePublishPartialResults();
+    }
+
+    boolean isPastDeadline() {
+        return deadline != null && Instant.now().isAfter(deadline);
+    }
+
+    private void maybePublishPartialResults() {
+        if (nextPublication == null || Instant.now().isBefore(nextPublication) || !publishing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Accumulator partialResults = new Accumulator();
+            synchronized (this) {
+                partialResults.addAll(accumulator);
+                partialResults.addAll(cache.previousResultsOfUncompleted(Instant.now()));
+            }
+            partialPublisher.accept(partialResults);
+            nextPublication = Instant.now().plus(publicationInterval);
+        } finally {
+            publishing.set(false);
+        }
+    }
+
+    /**
+     * Only call once the tree walk completed, the returned result is not safe for concurrent use.
+     */
+    synchronized ValidationResult getValidationResult() {
+        return validationResult;
+    }
+
+    /**
+     * Only call once the tree walk completed, the returned accumulator is not safe for concurrent use.
+     */
+    synchronized Accumulator getAccumulator() {
+        return accumulator;
+    }
+}
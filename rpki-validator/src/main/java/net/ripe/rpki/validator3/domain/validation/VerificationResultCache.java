@@ -0,0 +1,162 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import net.ripe.rpki.commons.crypto.CertificateRepositoryObject;
+import net.ripe.rpki.commons.crypto.cms.RpkiSignedObject;
+import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
+import net.ripe.rpki.commons.crypto.crl.X509Crl;
+import net.ripe.rpki.commons.crypto.x509cert.AbstractX509CertificateWrapper;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.config.ValidationConfig;
+import net.ripe.rpki.validator3.storage.data.Key;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Remembers which objects passed validation against a given issuer and CRL, so that the signature and revocation
+ * checks of an unchanged object are not repeated on every validation run.
+ *
+ * A result is only remembered when validation did not produce any failure or warning, and it is only reused while
+ * the object, and the CRL it was checked against, are still within their validity period. Objects that are close
+ * to expiry are therefore always validated completely.
+ */
+@Component
+public class VerificationResultCache {
+
+    private final ValidationConfig validationConfig;
+    private final Cache<Key, Instant> validUntilByKey;
+    private final Counter hits;
+    private final Counter avoidedSignatureChecks;
+
+    @Autowired
+    public VerificationResultCache(ValidationConfig validationConfig,
+                                   @Value("${rpki.validator.verification-result-cache.size:250000}") long maximumSize,
+                                   MeterRegistry registry) {
+        this.validationConfig = validationConfig;
+        this.validUntilByKey = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+        GuavaCacheMetrics.monitor(registry, validUntilByKey, "rpkivalidator.verification.results");
+        this.hits = Counter.builder("rpkivalidator.verification.results.reused")
+            .description("Number of object validations that were skipped because the object passed validation before")
+            .register(registry);
+        this.avoidedSignatureChecks = Counter.builder("rpkivalidator.verification.signatures.avoided")
+            .description("Number of signature verifications that were skipped because the object passed validation before")
+            .register(registry);
+    }
+
+    /**
+     * Runs <code>validation</code> for <code>object</code>, unless the same object already passed validation for the
+     * same issuer and neither the object nor <code>crl</code> expired since. The issuer key must identify the issuing
+     * certificate, the resources it was validated with and the CRL used for the revocation check.
+     */
+    public void validate(Key objectKey, Key issuerKey, CertificateRepositoryObject object, X509Crl crl,
+                         ValidationResult validationResult, Consumer<ValidationResult> validation) {
+        if (!isEnabled()) {
+            validation.accept(validationResult);
+            return;
+        }
+
+        final Key key = objectKey.concat(issuerKey);
+        final Instant now = Instant.now();
+        final Instant cachedValidUntil = validUntilByKey.getIfPresent(key);
+        if (cachedValidUntil != null && now.isBefore(cachedValidUntil)) {
+            hits.increment();
+            avoidedSignatureChecks.increment(signatureCount(object));
+            return;
+        }
+
+        final int failuresBefore = validationResult.getFailuresForAllLocations().size();
+        final int warningsBefore = validationResult.getWarnings().size();
+        validation.accept(validationResult);
+        final boolean clean = validationResult.getFailuresForAllLocations().size() == failuresBefore
+            && validationResult.getWarnings().size() == warningsBefore;
+
+        validUntil(object, crl)
+            .filter(validUntil -> clean && now.isBefore(validUntil))
+            .ifPresent(validUntil -> validUntilByKey.put(key, validUntil));
+    }
+
+    private boolean isEnabled() {
+        // Early warning validation complains about objects before they expire, which the validity period of
+        // the cached result does not take into account.
+        return validationConfig.isIncrementalValidation() && !validationConfig.isEarlyWarningValidation();
+    }
+
+    private static Optional<Instant> validUntil(CertificateRepositoryObject object, X509Crl crl) {
+        final Optional<DateTime> objectValidUntil = objectValidUntil(object);
+        if (!objectValidUntil.isPresent()) {
+            return Optional.empty();
+        }
+        DateTime validUntil = objectValidUntil.get();
+        if (crl != null && crl.getNextUpdateTime().isBefore(validUntil)) {
+            validUntil = crl.getNextUpdateTime();
+        }
+        return Optional.of(Instant.ofEpochMilli(validUntil.getMillis()));
+    }
+
+    private static Optional<DateTime> objectValidUntil(CertificateRepositoryObject object) {
+        if (object instanceof ManifestCms) {
+            final ManifestCms manifest = (ManifestCms) object;
+            return Optional.of(earliest(manifest.getNotValidAfter(), manifest.getNextUpdateTime()));
+        } else if (object instanceof RpkiSignedObject) {
+            return Optional.of(((RpkiSignedObject) object).getNotValidAfter());
+        } else if (object instanceof AbstractX509CertificateWrapper) {
+            return Optional.of(((AbstractX509CertificateWrapper) object).getValidityPeriod().getNotValidAfter());
+        } else if (object instanceof X509Crl) {
+            return Optional.of(((X509Crl) object).getNextUpdateTime());
+        }
+        return Optional.empty();
+    }
+
+    private static DateTime earliest(DateTime a, DateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Signed objects need both the signature on their EE certificate and the CMS signature to be verified.
+     */
+    private static int signatureCount(CertificateRepositoryObject object) {
+        return object instanceof RpkiSignedObject ? 2 : 1;
+    }
+}
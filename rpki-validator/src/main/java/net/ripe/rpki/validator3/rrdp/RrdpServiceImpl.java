@@ -36,6 +36,7 @@ import net.ripe.rpki.commons.util.RepositoryObjectType;
 import net.ripe.rpki.commons.validation.ValidationResult;
 import net.ripe.rpki.validator3.domain.ErrorCodes;
 import net.ripe.rpki.validator3.domain.RpkiObjectUtils;
+import net.ripe.rpki.validator3.domain.validation.ValidationExecutor;
 import net.ripe.rpki.validator3.domain.metrics.RrdpMetricsService;
 import net.ripe.rpki.validator3.storage.Storage;
 import net.ripe.rpki.validator3.storage.Tx;
@@ -94,19 +95,23 @@ public class RrdpServiceImpl implements RrdpService {
 
     private final RrdpMetricsService rrdpMetrics;
 
+    private final ValidationExecutor validationExecutor;
+
     @Autowired
     public RrdpServiceImpl(
             final RrdpClient rrdpClient,
             final RpkiObjects rpkiObjects,
             final RpkiRepositories rpkiRepositories,
             final Storage storage,
-            final RrdpMetricsService rrdpMetrics
+            final RrdpMetricsService rrdpMetrics,
+            final ValidationExecutor validationExecutor
     ) {
         this.rrdpClient = rrdpClient;
         this.rpkiObjects = rpkiObjects;
         this.rpkiRepositories = rpkiRepositories;
         this.storage = storage;
         this.rrdpMetrics = rrdpMetrics;
+        this.validationExecutor = validationExecutor;
     }
 
     @Override
@@ -362,26 +367,27 @@ public class RrdpServiceImpl implements RrdpService {
                              final RpkiRepositoryValidationRun validationRun) {
         final AtomicInteger counter = new AtomicInteger();
 
-        // Parsing RPKI objects is CPU bound, so do this with any available threads
-        List<Either<ValidationResult, Pair<String, RpkiObject>>> converted = snapshotObjects.parallelStream().map((value) ->
-                RpkiObjectUtils.createRpkiObject(value.getUri(), value.getContent())
-        ).collect(Collectors.toList());
+        // Parsing RPKI objects is CPU bound, so do this with all threads of the validation executor
+        List<Either<ValidationResult, Pair<String, RpkiObject>>> converted = validationExecutor.execute(() ->
+                snapshotObjects.parallelStream().map((value) ->
+                        RpkiObjectUtils.createRpkiObject(value.getUri(), value.getContent())
+                ).collect(Collectors.toList()));
 
-        storage.writeTx0(tx -> converted.forEach((maybeRpkiObject) ->
-                storeSnapshotObject(tx, validationRun, maybeRpkiObject, counter)
-        ));
+        final List<Pair<String, RpkiObject>> objectsWithLocations = new ArrayList<>(converted.size());
+        converted.forEach((maybeRpkiObject) ->
+                collectSnapshotObject(validationRun, maybeRpkiObject, objectsWithLocations, counter)
+        );
+        storage.writeTx0(tx -> rpkiObjects.putAll(tx, objectsWithLocations));
 
         return counter.get();
     }
 
-    private void storeSnapshotObject(Tx.Write tx, RpkiRepositoryValidationRun validationRun, Either<ValidationResult, Pair<String, RpkiObject>> maybeRpkiObject, AtomicInteger counter) {
+    private void collectSnapshotObject(RpkiRepositoryValidationRun validationRun, Either<ValidationResult, Pair<String, RpkiObject>> maybeRpkiObject,
+                                       List<Pair<String, RpkiObject>> objectsWithLocations, AtomicInteger counter) {
         if (maybeRpkiObject.isLeft()) {
             validationRun.addChecks(maybeRpkiObject.left().value());
         } else {
-            final Pair<String, RpkiObject> p = maybeRpkiObject.right().value();
-            final RpkiObject object = p.getRight();
-            final String location = p.getLeft();
-            rpkiObjects.put(tx, object, location);
+            objectsWithLocations.add(maybeRpkiObject.right().value());
             counter.incrementAndGet();
         }
     }
@@ -0,0 +1,70 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Opt-in compression of the values of a map. Values with an encoding of at least <code>minSize</code> bytes are
+ * deflated when they are stored, values that do not get smaller are stored as they are.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Compression {
+
+    public enum Dictionary {
+        NONE,
+        /** Object identifiers and strings that are common in DER encoded RPKI objects. */
+        DER
+    }
+
+    private static final Compression NONE = new Compression(Integer.MAX_VALUE, Dictionary.NONE);
+
+    int minSize;
+    Dictionary dictionary;
+
+    public static Compression none() {
+        return NONE;
+    }
+
+    public static Compression deflate(int minSize) {
+        return new Compression(minSize, Dictionary.NONE);
+    }
+
+    public static Compression deflateDer(int minSize) {
+        return new Compression(minSize, Dictionary.DER);
+    }
+
+    public boolean isEnabled() {
+        return this != NONE;
+    }
+}
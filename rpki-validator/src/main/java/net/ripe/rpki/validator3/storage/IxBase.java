@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public interface IxBase<T extends Serializable> {
 
@@ -52,6 +53,18 @@ public interface IxBase<T extends Serializable> {
 
     Map<Key, T> all(Tx.Read tx);
 
+    /**
+     * Lazily stream the primary keys in ascending order. Like all streams of the storage, the stream is backed by
+     * a cursor of the transaction: it must be consumed within the transaction, and the cursor is released when
+     * the stream is exhausted or closed, or at the latest when the transaction ends.
+     */
+    Stream<Key> streamKeys(Tx.Read tx);
+
+    /**
+     * Lazily stream the values in primary key order.
+     */
+    Stream<T> streamValues(Tx.Read tx);
+
     void clear(Tx.Write tx);
 
     T toValue(byte[] bb);
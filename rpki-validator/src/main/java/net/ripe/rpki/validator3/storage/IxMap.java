@@ -39,6 +39,7 @@ import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Indexes Map of type T.
@@ -58,6 +59,21 @@ public interface IxMap<T extends Serializable> extends IxBase<T> {
 
     Set<Key> getPkByIndex(String indexName, Tx.Read tx, Key indexKey);
 
+    /**
+     * Lazily stream the primary keys of the values with the given index key, in primary key order.
+     */
+    Stream<Key> streamPkByIndex(String indexName, Tx.Read tx, Key indexKey);
+
+    /**
+     * Lazily stream the values with the given index key, in primary key order.
+     */
+    Stream<T> streamByIndex(String indexName, Tx.Read tx, Key indexKey);
+
+    /**
+     * @return true if the value with the primary key has the given index key, without reading the value.
+     */
+    boolean hasIndexKey(String indexName, Tx.Read tx, Key indexKey, Key primaryKey);
+
     Map<Key, T> getByIndexLessThan(String indexName, Tx.Read tx, Key indexKey);
 
     Map<Key, T> getByIndexNotLessThan(String indexName, Tx.Read tx, Key indexKey);
@@ -70,7 +86,22 @@ public interface IxMap<T extends Serializable> extends IxBase<T> {
 
     Map<Key, T> getByIdxAscendingWhere(String indexName, Tx.Read tx, Predicate<T> p);
 
-    Optional<T> put(Tx.Write tx, Key primaryKey, T value);
+    /**
+     * @return at most <code>limit</code> primary keys in ascending order, starting at <code>fromKey</code> (inclusive)
+     * or at the first key when <code>fromKey</code> is null.
+     */
+    List<Key> keysFrom(Tx.Read tx, Key fromKey, int limit);
+
+    void put(Tx.Write tx, Key primaryKey, T value);
+
+    /**
+     * Store all values at once, which is considerably faster than calling {@link #put(Tx.Write, Key, Serializable)}
+     * for every value: the values are written in key order, values that are already stored are skipped and the
+     * indexes are updated in sorted batches.
+     *
+     * @return the number of values that were actually written.
+     */
+    int putAll(Tx.Write tx, Map<Key, T> values);
 
     boolean modify(Tx.Write tx, Key primaryKey, Consumer<T> modifyValue);
 
@@ -34,10 +34,17 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MultIxMap<T extends Serializable> extends IxBase<T> {
     List<T> get(Tx.Read tx, Key primaryKey);
 
+    /**
+     * Lazily stream the values of the primary key, see {@link IxBase#streamKeys(Tx.Read)}. The values are returned
+     * in the order they are stored in, which is not the order of the values themselves.
+     */
+    Stream<T> stream(Tx.Read tx, Key primaryKey);
+
     int count(Tx.Read tx, Key primaryKey);
 
     void put(Tx.Write tx, Key primaryKey, T value);
@@ -29,6 +29,7 @@
  */
 package net.ripe.rpki.validator3.storage;
 
+import lombok.Value;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.encoding.Coder;
 import org.jetbrains.annotations.NotNull;
@@ -60,8 +61,33 @@ public interface Storage {
                                                       Map<String, Function<T, Set<Key>>> indexFunctions,
                                                       Coder<T> c);
 
+    <T extends Serializable> IxMap<T> createIxMap(String name,
+                                                      Map<String, Function<T, Set<Key>>> indexFunctions,
+                                                      Coder<T> c,
+                                                      Compression compression);
+
     void gc();
 
     @NotNull
     Map<String, String> getDbStats();
+
+    /**
+     * @return the state of the index rebuilds that were needed since the storage was opened, by map name.
+     */
+    @NotNull
+    Map<String, String> getReindexStatus();
+
+    /**
+     * Verify the checksums of the next (about) <code>maxValues</code> stored values of all maps, continuing where
+     * the previous call stopped and starting over once all maps were verified.
+     */
+    ChecksumScrub scrubChecksums(int maxValues);
+
+    @Value
+    class ChecksumScrub {
+        long checked;
+        long corrupted;
+        /** True if the last stored value was verified, the next call starts over with the first one. */
+        boolean completed;
+    }
 }
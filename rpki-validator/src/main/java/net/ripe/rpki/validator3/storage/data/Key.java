@@ -118,7 +118,7 @@ public class Key implements Serializable {
         final int size = Arrays.stream(keys).mapToInt(Key::size).sum();
         final ByteBuffer combined = ByteBuffer.allocate(size);
         Arrays.stream(keys).forEach(k -> combined.put(k.bytes));
-        return new Key(combined);
+        return new Key(combined.array());
     }
 
     @Override
@@ -52,6 +52,7 @@ import org.joda.time.DateTime;
 
 import javax.validation.constraints.NotNull;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Optional;
 
 import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
@@ -90,12 +91,22 @@ public class RpkiObject extends Base<RpkiObject> {
     @NotNull
     private byte[] encoded;
 
+    /**
+     * Set when the SHA-256 hash was computed from the encoded object when it was ingested. Its integrity at rest is
+     * covered by the checksum of the storage, so the hash does not have to be computed again on every validation
+     * run. When only a fraction of the reads verify the checksum, corruption may only be found by the background
+     * scrub of the storage (see <code>rpki.validator.storage.checksum.verify-fraction</code>). Objects stored by
+     * older versions do not have this flag.
+     */
+    private boolean sha256Verified;
+
     public RpkiObject() {
     }
 
     public RpkiObject(CertificateRepositoryObject object) {
         byte[] encoded = object.getEncoded();
         this.sha256 = Sha256.hash(encoded);
+        this.sha256Verified = true;
         this.encoded = encoded;
         if (object instanceof X509ResourceCertificate) {
             this.serialNumber = ((X509ResourceCertificate) object).getSerialNumber();
@@ -136,6 +147,14 @@ public class RpkiObject extends Base<RpkiObject> {
         }
     }
 
+    /**
+     * @return true when the encoded object has the given SHA-256 hash, only hashes the object again when its stored
+     * hash was not verified at ingest.
+     */
+    public boolean hasSha256(byte[] expected) {
+        return Arrays.equals(sha256Verified ? sha256 : Sha256.hash(encoded), expected);
+    }
+
     public <T extends CertificateRepositoryObject> Optional<T> get(Class<T> clazz, ValidationResult validationResult) {
         ValidationResult temporary = newValidationResult(validationResult.getCurrentLocation());
         try {
@@ -0,0 +1,135 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.data;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable set of fixed-size keys (such as SHA-256 hashes of RPKI objects), stored as a single sorted byte array
+ * so that a large set can be written as one value and searched with a binary search.
+ */
+public final class SortedKeySet implements Serializable {
+
+    public static final int SHA256_KEY_SIZE = 32;
+
+    private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    private final int keySize;
+    private final byte[] keys;
+
+    private SortedKeySet(int keySize, byte[] keys) {
+        Preconditions.checkArgument(keySize > 0 && keys.length % keySize == 0, "Invalid key set of %s bytes for keys of %s bytes", keys.length, keySize);
+        this.keySize = keySize;
+        this.keys = keys;
+    }
+
+    /**
+     * @param keys the keys, all of them <code>keySize</code> bytes long. Duplicates are removed.
+     */
+    public static SortedKeySet of(int keySize, Collection<Key> keys) {
+        final byte[][] sorted = keys.stream()
+            .map(key -> {
+                Preconditions.checkArgument(key.size() == keySize, "Key %s is not %s bytes long", key, keySize);
+                return key.getBytes();
+            })
+            .sorted(COMPARATOR)
+            .toArray(byte[][]::new);
+
+        final byte[] bytes = new byte[sorted.length * keySize];
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || COMPARATOR.compare(sorted[i - 1], sorted[i]) != 0) {
+                System.arraycopy(sorted[i], 0, bytes, count * keySize, keySize);
+                count++;
+            }
+        }
+        return new SortedKeySet(keySize, Arrays.copyOf(bytes, count * keySize));
+    }
+
+    public static SortedKeySet fromBytes(int keySize, byte[] bytes) {
+        return new SortedKeySet(keySize, bytes);
+    }
+
+    public byte[] toBytes() {
+        return keys;
+    }
+
+    public int size() {
+        return keys.length / keySize;
+    }
+
+    public boolean contains(Key key) {
+        if (key.size() != keySize) {
+            return false;
+        }
+        final byte[] needle = key.getBytes();
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int c = compareAt(middle, needle);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Stream<Key> stream() {
+        return IntStream.range(0, size()).mapToObj(this::get);
+    }
+
+    private Key get(int index) {
+        return Key.of(Arrays.copyOfRange(keys, index * keySize, (index + 1) * keySize));
+    }
+
+    private int compareAt(int index, byte[] needle) {
+        final int offset = index * keySize;
+        for (int i = 0; i < keySize; i++) {
+            final int c = UnsignedBytes.compare(keys[offset + i], needle[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -29,8 +29,33 @@
  */
 package net.ripe.rpki.validator3.storage.encoding;
 
+import java.util.Arrays;
+
 public interface Coder<T> {
     byte[] toBytes(T t);
 
     T fromBytes(byte[] bb);
+
+    /**
+     * Encode the value after <code>prefixLength</code> bytes that are left for the caller to fill in. Coders that
+     * know the encoded size up front override this to allocate the array only once.
+     */
+    default byte[] toBytes(T t, int prefixLength) {
+        final byte[] bytes = toBytes(t);
+        if (prefixLength == 0) {
+            return bytes;
+        }
+        final byte[] result = new byte[prefixLength + bytes.length];
+        System.arraycopy(bytes, 0, result, prefixLength, bytes.length);
+        return result;
+    }
+
+    /**
+     * Decode the value from <code>length</code> bytes of <code>bb</code> starting at <code>offset</code>. Coders
+     * that can read the value in place override this to avoid copying it out first. The array must not be kept
+     * after decoding, since it may be owned by the storage.
+     */
+    default T fromBytes(byte[] bb, int offset, int length) {
+        return fromBytes(offset == 0 && length == bb.length ? bb : Arrays.copyOfRange(bb, offset, offset + length));
+    }
 }
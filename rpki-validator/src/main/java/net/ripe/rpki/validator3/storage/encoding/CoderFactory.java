@@ -35,6 +35,7 @@ import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
 import net.ripe.rpki.validator3.storage.data.RpkiRepository;
+import net.ripe.rpki.validator3.storage.data.SortedKeySet;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.CertificateTreeValidationRun;
 import net.ripe.rpki.validator3.storage.data.validation.RrdpRepositoryValidationRun;
@@ -49,6 +50,7 @@ import net.ripe.rpki.validator3.storage.encoding.custom.validation.RRValidationR
 import net.ripe.rpki.validator3.storage.encoding.custom.validation.RSValidationRunCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.validation.TAValidationRunCoder;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -74,6 +76,16 @@ public class CoderFactory {
             public T fromBytes(byte[] bb) {
                 return cc.fromBytes(bb);
             }
+
+            @Override
+            public byte[] toBytes(T t, int prefixLength) {
+                return cc.toBytes(t, prefixLength);
+            }
+
+            @Override
+            public T fromBytes(byte[] bb, int offset, int length) {
+                return cc.fromBytes(bb, offset, length);
+            }
         };
     }
 
@@ -107,6 +119,39 @@ public class CoderFactory {
             public Key fromBytes(byte[] bytes) {
                 return Key.of(bytes);
             }
+
+            @Override
+            public Key fromBytes(byte[] bytes, int offset, int length) {
+                return new Key(ByteBuffer.wrap(bytes, offset, length));
+            }
+        };
+    }
+
+    public static Coder<SortedKeySet> sortedKeySetCoder(int keySize) {
+        return new Coder<SortedKeySet>() {
+            @Override
+            public byte[] toBytes(SortedKeySet keys) {
+                return keys.toBytes();
+            }
+
+            @Override
+            public SortedKeySet fromBytes(byte[] bytes) {
+                return SortedKeySet.fromBytes(keySize, bytes);
+            }
+        };
+    }
+
+    public static Coder<byte[]> bytesCoder() {
+        return new Coder<byte[]>() {
+            @Override
+            public byte[] toBytes(byte[] bytes) {
+                return bytes;
+            }
+
+            @Override
+            public byte[] fromBytes(byte[] bytes) {
+                return bytes;
+            }
         };
     }
 
@@ -135,6 +180,11 @@ public class CoderFactory {
             public String fromBytes(byte[] bb) {
                 return new String(bb, UTF_8);
             }
+
+            @Override
+            public String fromBytes(byte[] bb, int offset, int length) {
+                return new String(bb, offset, length, UTF_8);
+            }
         };
     }
 
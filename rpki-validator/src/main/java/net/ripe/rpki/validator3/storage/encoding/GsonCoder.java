@@ -110,6 +110,12 @@ public class GsonCoder<T> implements Coder<T> {
         return gson.fromJson(json, class_);
     }
 
+    @Override
+    public T fromBytes(byte[] bb, int offset, int length) {
+        String json = new String(bb, offset, length, UTF_8);
+        return gson.fromJson(json, class_);
+    }
+
     static class ByteArraysGsonAdapter implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
 
         @Override
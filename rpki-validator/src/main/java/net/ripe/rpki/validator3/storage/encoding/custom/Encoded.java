@@ -34,9 +34,14 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 @Data
@@ -65,13 +70,20 @@ public class Encoded {
     }
 
     public byte[] toByteArray() {
+        return toByteArray(0);
+    }
+
+    /**
+     * @return the encoded fields after <code>prefixLength</code> bytes that are left for the caller to fill in.
+     */
+    public byte[] toByteArray(int prefixLength) {
         int totalSize = Integer.BYTES +
                 content.values().stream()
                 .map(b -> Short.BYTES + Integer.BYTES + b.length)
                 .reduce(0, Integer::sum);
 
-        byte[] array = new byte[totalSize];
-        ByteBuffer bb = ByteBuffer.wrap(array);
+        byte[] array = new byte[prefixLength + totalSize];
+        ByteBuffer bb = ByteBuffer.wrap(array, prefixLength, totalSize);
         final int entryCount = content.size();
         bb.putInt(entryCount);
 
@@ -114,8 +126,85 @@ public class Encoded {
         return encoded;
     }
 
+    /**
+     * Decode lazily: only the tags and offsets are read up front and a field is copied out of <code>array</code> when
+     * it is accessed, so fields that are never used are not copied and no intermediate map is built.
+     *
+     * @return a read-only view of the fields, <code>array</code> must not be modified while it is used.
+     */
+    public static Map<Short, byte[]> view(byte[] array) {
+        return new View(array, 0, array.length);
+    }
+
+    /**
+     * @return a read-only view of the fields encoded in <code>length</code> bytes of <code>array</code> starting at
+     * <code>offset</code>.
+     */
+    public static Map<Short, byte[]> view(byte[] array, int offset, int length) {
+        return new View(array, offset, length);
+    }
+
     public static Optional<byte[]> field(Map<Short, byte[]> c, short tag) {
         return Optional.ofNullable(c.get(tag));
     }
 
+    private static class View extends AbstractMap<Short, byte[]> {
+        private final byte[] array;
+        private final short[] tags;
+        private final int[] offsets;
+
+        private View(byte[] array, int offset, int length) {
+            final ByteBuffer bb = ByteBuffer.wrap(array, offset, length);
+            final int entryCount = bb.getInt();
+            this.array = array;
+            this.tags = new short[entryCount];
+            this.offsets = new int[entryCount + 1];
+            for (int i = 0; i < entryCount; i++) {
+                tags[i] = bb.getShort();
+                offsets[i] = offset + bb.getInt();
+            }
+            offsets[entryCount] = offset + length;
+        }
+
+        private int indexOf(Object tag) {
+            if (tag instanceof Short) {
+                final short t = (Short) tag;
+                for (int i = 0; i < tags.length; i++) {
+                    if (tags[i] == t) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private byte[] fieldAt(int i) {
+            return Arrays.copyOfRange(array, offsets[i], offsets[i + 1]);
+        }
+
+        @Override
+        public boolean containsKey(Object tag) {
+            return indexOf(tag) >= 0;
+        }
+
+        @Override
+        public byte[] get(Object tag) {
+            final int i = indexOf(tag);
+            return i < 0 ? null : fieldAt(i);
+        }
+
+        @Override
+        public int size() {
+            return tags.length;
+        }
+
+        @Override
+        public Set<Entry<Short, byte[]>> entrySet() {
+            final Map<Short, byte[]> fields = new LinkedHashMap<>();
+            for (int i = 0; i < tags.length; i++) {
+                fields.put(tags[i], fieldAt(i));
+            }
+            return Collections.unmodifiableMap(fields).entrySet();
+        }
+    }
 }
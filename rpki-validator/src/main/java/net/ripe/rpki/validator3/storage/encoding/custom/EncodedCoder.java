@@ -0,0 +1,65 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.encoding.custom;
+
+import net.ripe.rpki.validator3.storage.encoding.Coder;
+
+import java.util.Map;
+
+/**
+ * Base class of the coders using the tagged {@link Encoded} format, which can encode after a prefix and decode in
+ * place without copying the stored value first.
+ */
+public abstract class EncodedCoder<T> implements Coder<T> {
+
+    protected abstract Encoded encode(T t);
+
+    protected abstract T decode(Map<Short, byte[]> content);
+
+    @Override
+    public byte[] toBytes(T t) {
+        return encode(t).toByteArray();
+    }
+
+    @Override
+    public byte[] toBytes(T t, int prefixLength) {
+        return encode(t).toByteArray(prefixLength);
+    }
+
+    @Override
+    public T fromBytes(byte[] bytes) {
+        return decode(Encoded.view(bytes));
+    }
+
+    @Override
+    public T fromBytes(byte[] bytes, int offset, int length) {
+        return decode(Encoded.view(bytes, offset, length));
+    }
+}
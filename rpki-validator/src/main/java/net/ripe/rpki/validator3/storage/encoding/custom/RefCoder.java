@@ -31,25 +31,23 @@ package net.ripe.rpki.validator3.storage.encoding.custom;
 
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 
 import java.io.Serializable;
 import java.util.Map;
 
-public class RefCoder<T extends Serializable> implements Coder<Ref<T>> {
+public class RefCoder<T extends Serializable> extends EncodedCoder<Ref<T>> {
 
     private final static short TABLE_NAME_TAG = Tags.unique(11);
     private final static short KEY_TAG = Tags.unique(12);
 
-    public byte[] toBytes(Ref<T> ref) {
+    protected Encoded encode(Ref<T> ref) {
         final Encoded encoded = new Encoded();
         encoded.append(TABLE_NAME_TAG, Coders.toBytes(ref.getMapName()));
         encoded.append(KEY_TAG, ref.key().getBytes());
-        return encoded.toByteArray();
+        return encoded;
     }
 
-    public Ref<T> fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+    protected Ref<T> decode(Map<Short, byte[]> content) {
         return Ref.unsafe(
                 Coders.toString(content.get(TABLE_NAME_TAG)),
                 Key.of(content.get(KEY_TAG)));
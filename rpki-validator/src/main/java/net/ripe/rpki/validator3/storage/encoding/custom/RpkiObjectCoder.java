@@ -30,11 +30,10 @@
 package net.ripe.rpki.validator3.storage.encoding.custom;
 
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 
 import java.util.Map;
 
-public class RpkiObjectCoder implements Coder<RpkiObject> {
+public class RpkiObjectCoder extends EncodedCoder<RpkiObject> {
 
     private final static short TYPE_TAG = Tags.unique(31);
     private final static short SHA256_TAG = Tags.unique(32);
@@ -45,9 +44,28 @@ public class RpkiObjectCoder implements Coder<RpkiObject> {
     private final static short SIGNING_TIME_TAG = Tags.unique(37);
     private final static short LOCATIONS_TAG = Tags.unique(38);
     private final static short ROA_PREFIXES = Tags.unique(39);
+    private final static short SHA256_VERIFIED_TAG = Tags.unique(40);
+
+    private final boolean includeEncoded;
+
+    public RpkiObjectCoder() {
+        this(true);
+    }
+
+    private RpkiObjectCoder(boolean includeEncoded) {
+        this.includeEncoded = includeEncoded;
+    }
+
+    /**
+     * Coder for the metadata of an object only, the encoded object is stored separately. Records that still contain
+     * the encoded object (written by older versions) are decoded including it.
+     */
+    public static RpkiObjectCoder withoutEncoded() {
+        return new RpkiObjectCoder(false);
+    }
 
     @Override
-    public byte[] toBytes(RpkiObject rpkiObject) {
+    protected Encoded encode(RpkiObject rpkiObject) {
         final Encoded encoded = new Encoded();
 
         BaseCoder.toBytesNoId(rpkiObject, encoded);
@@ -56,16 +74,17 @@ public class RpkiObjectCoder implements Coder<RpkiObject> {
         encoded.append(SHA256_TAG, rpkiObject.getSha256());
         encoded.append(AKI_TAG, rpkiObject.getAuthorityKeyIdentifier());
         encoded.appendNotNull(SERIAL_TAG, rpkiObject.getSerialNumber(), Coders::toBytes);
-        encoded.appendNotNull(ENCODED_TAG, rpkiObject.getEncoded());
+        if (includeEncoded) {
+            encoded.appendNotNull(ENCODED_TAG, rpkiObject.getEncoded());
+        }
         encoded.appendNotNull(SIGNING_TIME_TAG, rpkiObject.getSigningTime(), Coders::toBytes);
+        encoded.append(SHA256_VERIFIED_TAG, Coders.toBytes(rpkiObject.isSha256Verified()));
 
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public RpkiObject fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
-
+    protected RpkiObject decode(Map<Short, byte[]> content) {
         final RpkiObject rpkiObject = new RpkiObject();
         BaseCoder.fromBytesNoId(content, rpkiObject);
 
@@ -75,6 +94,7 @@ public class RpkiObjectCoder implements Coder<RpkiObject> {
         rpkiObject.setAuthorityKeyIdentifier(content.get(AKI_TAG));
         Encoded.field(content, SIGNING_TIME_TAG).ifPresent(b -> rpkiObject.setSigningTime(Coders.toInstant(b)));
         Encoded.field(content, SERIAL_TAG).ifPresent(b -> rpkiObject.setSerialNumber(Coders.toBigInteger(b)));
+        Encoded.field(content, SHA256_VERIFIED_TAG).ifPresent(b -> rpkiObject.setSha256Verified(Coders.toBoolean(b)));
 
         return rpkiObject;
     }
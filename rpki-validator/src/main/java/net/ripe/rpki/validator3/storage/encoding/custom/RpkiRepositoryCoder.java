@@ -33,7 +33,6 @@ import net.ripe.rpki.validator3.api.util.InstantWithoutNanos;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RpkiRepository;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 
 import javax.validation.constraints.NotEmpty;
 import java.util.ArrayList;
@@ -42,7 +41,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class RpkiRepositoryCoder implements Coder<RpkiRepository> {
+public class RpkiRepositoryCoder extends EncodedCoder<RpkiRepository> {
 
     private final static short TYPE_TAG = Tags.unique(51);
     private final static short RRDP_NOTIFY_URL_TAG = Tags.unique(52);
@@ -59,7 +58,7 @@ public class RpkiRepositoryCoder implements Coder<RpkiRepository> {
     private final static RefCoder<TrustAnchor> taRefCoder = new RefCoder<>();
 
     @Override
-    public byte[] toBytes(RpkiRepository rpkiRepository) {
+    protected Encoded encode(RpkiRepository rpkiRepository) {
         final Encoded encoded = new Encoded();
 
         BaseCoder.toBytes(rpkiRepository, encoded);
@@ -89,13 +88,11 @@ public class RpkiRepositoryCoder implements Coder<RpkiRepository> {
             encoded.append(TRUST_ANCHORS_VALUES, lastReferencedAtBytes);
         }
 
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public RpkiRepository fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
-
+    protected RpkiRepository decode(Map<Short, byte[]> content) {
         final RpkiRepository rpkiRepository = new RpkiRepository();
         BaseCoder.fromBytes(content, rpkiRepository);
 
@@ -30,13 +30,12 @@
 package net.ripe.rpki.validator3.storage.encoding.custom;
 
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 
 import java.util.Map;
 
 import static net.ripe.rpki.validator3.storage.encoding.custom.Encoded.field;
 
-public class TrustAnchorCoder implements Coder<TrustAnchor> {
+public class TrustAnchorCoder extends EncodedCoder<TrustAnchor> {
 
     private final static short NAME_TAG = Tags.unique(71);
     private final static short RSYNC_PREFETCH_TAG = Tags.unique(72);
@@ -47,7 +46,7 @@ public class TrustAnchorCoder implements Coder<TrustAnchor> {
     private final static short INITIAL_VALIDATION_DONE_TAG = Tags.unique(77);
 
     @Override
-    public byte[] toBytes(TrustAnchor trustAnchor) {
+    protected Encoded encode(TrustAnchor trustAnchor) {
         final Encoded encoded = new Encoded();
 
         BaseCoder.toBytes(trustAnchor, encoded);
@@ -64,13 +63,11 @@ public class TrustAnchorCoder implements Coder<TrustAnchor> {
             encoded.append(LOCATIONS_TAG, Coders.toBytes(trustAnchor.getLocations(), Coders::toBytes));
         }
 
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public TrustAnchor fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
-
+    protected TrustAnchor decode(Map<Short, byte[]> content) {
         final TrustAnchor trustAnchor = new TrustAnchor();
         BaseCoder.fromBytes(content, trustAnchor);
 
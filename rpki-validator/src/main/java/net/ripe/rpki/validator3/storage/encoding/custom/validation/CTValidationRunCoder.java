@@ -32,15 +32,15 @@ package net.ripe.rpki.validator3.storage.encoding.custom.validation;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.CertificateTreeValidationRun;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Coders;
 import net.ripe.rpki.validator3.storage.encoding.custom.Encoded;
+import net.ripe.rpki.validator3.storage.encoding.custom.EncodedCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.RefCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Tags;
 
 import java.util.Map;
 
-public class CTValidationRunCoder implements Coder<CertificateTreeValidationRun> {
+public class CTValidationRunCoder extends EncodedCoder<CertificateTreeValidationRun> {
 
     private final static short TA_TAG = Tags.unique(81);
     private final static short EARLIEST_OBJECT_EXPIRATION_TAG = Tags.unique(82);
@@ -48,17 +48,16 @@ public class CTValidationRunCoder implements Coder<CertificateTreeValidationRun>
     private final static RefCoder<TrustAnchor> taRefCoder = new RefCoder<>();
 
     @Override
-    public byte[] toBytes(CertificateTreeValidationRun validationRun) {
+    protected Encoded encode(CertificateTreeValidationRun validationRun) {
         final Encoded encoded = new Encoded();
         ValidationRunCoder.toBytes(validationRun, encoded);
         encoded.appendNotNull(TA_TAG, validationRun.getTrustAnchor(), taRefCoder::toBytes);
         encoded.appendNotNull(EARLIEST_OBJECT_EXPIRATION_TAG, validationRun.getEarliestObjectExpiration(), Coders::toBytes);
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public CertificateTreeValidationRun fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+    protected CertificateTreeValidationRun decode(Map<Short, byte[]> content) {
         final Ref<TrustAnchor> trustAnchorRef = taRefCoder.fromBytes(content.get(TA_TAG));
         final CertificateTreeValidationRun validationRun = new CertificateTreeValidationRun(trustAnchorRef);
         Encoded.field(content, EARLIEST_OBJECT_EXPIRATION_TAG).ifPresent(b -> validationRun.setEarliestObjectExpiration(Coders.toInstant(b)));
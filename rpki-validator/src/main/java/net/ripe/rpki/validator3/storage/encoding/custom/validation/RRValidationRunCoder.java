@@ -32,30 +32,29 @@ package net.ripe.rpki.validator3.storage.encoding.custom.validation;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RpkiRepository;
 import net.ripe.rpki.validator3.storage.data.validation.RrdpRepositoryValidationRun;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Encoded;
+import net.ripe.rpki.validator3.storage.encoding.custom.EncodedCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.RefCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Tags;
 
 import java.util.Map;
 
-public class RRValidationRunCoder implements Coder<RrdpRepositoryValidationRun> {
+public class RRValidationRunCoder extends EncodedCoder<RrdpRepositoryValidationRun> {
 
     private final static short REPO_TAG = Tags.unique(91);
 
     private final static RefCoder<RpkiRepository> repoRefCoder = new RefCoder<>();
 
     @Override
-    public byte[] toBytes(RrdpRepositoryValidationRun validationRun) {
+    protected Encoded encode(RrdpRepositoryValidationRun validationRun) {
         final Encoded encoded = new Encoded();
         ValidationRunCoder.toBytes(validationRun, encoded);
         encoded.appendNotNull(REPO_TAG, validationRun.getRpkiRepository(), repoRefCoder::toBytes);
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public RrdpRepositoryValidationRun fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+    protected RrdpRepositoryValidationRun decode(Map<Short, byte[]> content) {
         final Ref<RpkiRepository> repoRef = repoRefCoder.fromBytes(content.get(REPO_TAG));
         final RrdpRepositoryValidationRun validationRun = new RrdpRepositoryValidationRun(repoRef);
         ValidationRunCoder.fromBytes(content, validationRun);
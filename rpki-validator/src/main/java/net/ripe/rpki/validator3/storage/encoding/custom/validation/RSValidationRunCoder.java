@@ -30,23 +30,22 @@
 package net.ripe.rpki.validator3.storage.encoding.custom.validation;
 
 import net.ripe.rpki.validator3.storage.data.validation.RsyncRepositoryValidationRun;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Encoded;
+import net.ripe.rpki.validator3.storage.encoding.custom.EncodedCoder;
 
 import java.util.Map;
 
-public class RSValidationRunCoder implements Coder<RsyncRepositoryValidationRun> {
+public class RSValidationRunCoder extends EncodedCoder<RsyncRepositoryValidationRun> {
 
     @Override
-    public byte[] toBytes(RsyncRepositoryValidationRun validationRun) {
+    protected Encoded encode(RsyncRepositoryValidationRun validationRun) {
         final Encoded encoded = new Encoded();
         ValidationRunCoder.toBytes(validationRun, encoded);
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public RsyncRepositoryValidationRun fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+    protected RsyncRepositoryValidationRun decode(Map<Short, byte[]> content) {
         final RsyncRepositoryValidationRun validationRun = new RsyncRepositoryValidationRun();
         ValidationRunCoder.fromBytes(content, validationRun);
         return validationRun;
@@ -32,15 +32,15 @@ package net.ripe.rpki.validator3.storage.encoding.custom.validation;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.TrustAnchorValidationRun;
-import net.ripe.rpki.validator3.storage.encoding.Coder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Coders;
 import net.ripe.rpki.validator3.storage.encoding.custom.Encoded;
+import net.ripe.rpki.validator3.storage.encoding.custom.EncodedCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.RefCoder;
 import net.ripe.rpki.validator3.storage.encoding.custom.Tags;
 
 import java.util.Map;
 
-public class TAValidationRunCoder implements Coder<TrustAnchorValidationRun> {
+public class TAValidationRunCoder extends EncodedCoder<TrustAnchorValidationRun> {
 
     private final static short TA_TAG = Tags.unique(101);
     private final static short URI_TAG = Tags.unique(102);
@@ -48,17 +48,16 @@ public class TAValidationRunCoder implements Coder<TrustAnchorValidationRun> {
     private final static RefCoder<TrustAnchor> taRefCoder = new RefCoder<>();
 
     @Override
-    public byte[] toBytes(TrustAnchorValidationRun validationRun) {
+    protected Encoded encode(TrustAnchorValidationRun validationRun) {
         final Encoded encoded = new Encoded();
         ValidationRunCoder.toBytes(validationRun, encoded);
         encoded.appendNotNull(TA_TAG, validationRun.getTrustAnchor(), taRefCoder::toBytes);
         encoded.appendNotNull(URI_TAG, validationRun.getTrustAnchorCertificateURI(), Coders::toBytes);
-        return encoded.toByteArray();
+        return encoded;
     }
 
     @Override
-    public TrustAnchorValidationRun fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+    protected TrustAnchorValidationRun decode(Map<Short, byte[]> content) {
         final Ref<TrustAnchor> trustAnchorRef = taRefCoder.fromBytes(content.get(TA_TAG));
         final String uri = Coders.toString(content.get(URI_TAG));
         final TrustAnchorValidationRun validationRun = new TrustAnchorValidationRun(trustAnchorRef, uri);
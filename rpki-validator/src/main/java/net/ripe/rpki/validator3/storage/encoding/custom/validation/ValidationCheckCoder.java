@@ -64,7 +64,7 @@ public class ValidationCheckCoder implements Coder<ValidationCheck> {
 
     @Override
     public ValidationCheck fromBytes(byte[] bytes) {
-        Map<Short, byte[]> content = Encoded.fromByteArray(bytes).getContent();
+        Map<Short, byte[]> content = Encoded.view(bytes);
 
         byte[] location = content.get(LOCATION_TAG);
         byte[] key = content.get(KEY_TAG);
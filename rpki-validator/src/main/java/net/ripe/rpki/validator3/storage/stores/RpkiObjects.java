@@ -29,11 +29,13 @@
  */
 package net.ripe.rpki.validator3.storage.stores;
 
+import lombok.Value;
 import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
 import net.ripe.rpki.validator3.api.util.InstantWithoutNanos;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 import java.util.stream.Stream;
@@ -45,6 +47,12 @@ public interface RpkiObjects extends GenericStore<RpkiObject> {
 
     void put(Tx.Write tx, RpkiObject rpkiObject, String location);
 
+    /**
+     * Store a batch of objects with their locations, equivalent to calling {@link #put(Tx.Write, RpkiObject, String)}
+     * for every pair but writing every store in key order.
+     */
+    void putAll(Tx.Write tx, List<Pair<String, RpkiObject>> objectsWithLocations);
+
     void delete(Tx.Write tx, RpkiObject o);
 
     void markReachable(Tx.Write tx, Key pk, InstantWithoutNanos i);
@@ -59,13 +67,46 @@ public interface RpkiObjects extends GenericStore<RpkiObject> {
 
     Optional<RpkiObject> findLatestMftByAKI(Tx.Read tx, byte[] authorityKeyIdentifier);
 
-    long deleteUnreachableObjects(InstantWithoutNanos unreachableSince);
+    /**
+     * Delete the objects that were not marked reachable since <code>unreachableSince</code>.
+     */
+    UnreachableCleanup deleteUnreachableObjects(InstantWithoutNanos unreachableSince);
 
     Map<String, RpkiObject> findObjectsInManifest(Tx.Read tx, ManifestCms manifestCms);
 
-    Stream<byte[]> streamObjects(Tx.Read tx, RpkiObject.Type type);
+    /**
+     * @return the objects that are present for the entries of the manifest, together with their locations, keyed
+     * by manifest file name.
+     */
+    Map<String, Pair<RpkiObject, SortedSet<String>>> findObjectsWithLocationsInManifest(Tx.Read tx, ManifestCms manifestCms);
+
+    /**
+     * @return a lazy stream of the objects of the type, in key order. The stream must be consumed within the
+     * transaction.
+     */
+    Stream<RpkiObject> streamObjects(Tx.Read tx, RpkiObject.Type type);
 
-    Set<Key> getPkByType(Tx.Read tx, RpkiObject.Type type);
+    boolean hasType(Tx.Read tx, Key key, RpkiObject.Type type);
 
     void markReachable(Tx.Write tx, List<Key> rpkiObjectsKeys);
+
+    /**
+     * @return the keys of the objects that were not marked reachable at or after <code>since</code>.
+     */
+    List<Key> findNotMarkedReachableSince(Tx.Read tx, Collection<Key> rpkiObjectsKeys, InstantWithoutNanos since);
+
+    /**
+     * @return at most <code>limit</code> object keys in ascending order, starting at <code>fromKey</code> (inclusive)
+     * or at the first object when <code>fromKey</code> is null.
+     */
+    List<Key> findKeysFrom(Tx.Read tx, Key fromKey, int limit);
+
+    @Value
+    class UnreachableCleanup {
+        /**
+         * The number of objects whose reachability was examined.
+         */
+        long scanned;
+        long deleted;
+    }
 }
@@ -41,6 +41,7 @@ import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.*;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -75,7 +76,7 @@ public interface ValidationRuns {
 
     void associate(Tx.Write writeTx, RpkiRepositoryValidationRun validationRun, RpkiRepository r);
 
-    void associateRpkiObjectKey(Tx.Write tx, CertificateTreeValidationRun validationRun, Key rpkiObjectKey);
+    void associateRpkiObjectKeys(Tx.Write tx, CertificateTreeValidationRun validationRun, Collection<Key> rpkiObjectKeys);
 
     Set<Key> findAssociatedPks(Tx.Read tx, CertificateTreeValidationRun validationRun);
 
@@ -85,5 +86,9 @@ public interface ValidationRuns {
 
     int getObjectCount(Tx.Read tx, ValidationRun validationRun);
 
-    int removeOrphanValidationRunAssociations(Tx.Write tx);
+    /**
+     * Remove the associations of validation runs with RPKI objects and repositories that no longer exist. This
+     * uses several (short) write transactions.
+     */
+    int removeOrphanValidationRunAssociations();
 }
@@ -35,6 +35,7 @@ import com.google.common.primitives.UnsignedBytes;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
 import net.ripe.rpki.validator3.api.util.InstantWithoutNanos;
+import net.ripe.rpki.validator3.storage.Compression;
 import net.ripe.rpki.validator3.storage.IxMap;
 import net.ripe.rpki.validator3.storage.MultIxMap;
 import net.ripe.rpki.validator3.storage.Storage;
@@ -42,15 +43,19 @@ import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
 import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
+import net.ripe.rpki.validator3.storage.encoding.custom.RpkiObjectCoder;
 import net.ripe.rpki.validator3.storage.stores.GenericStoreImpl;
 import net.ripe.rpki.validator3.storage.stores.RpkiObjects;
 import net.ripe.rpki.validator3.util.Bench;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -69,10 +74,24 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
     private static final String RPKI_OBJECTS = "rpki-objects";
     private static final String REACHABLE_MAP = "rpki-objects-reachable";
     private static final String LOCATION_MAP = "rpki-objects-location";
+    private static final String ENCODED_MAP = "rpki-objects-encoded";
     private static final String BY_AKI_MFT_INDEX = "by-aki-mft";
     private static final String BY_TYPE_INDEX = "by-type";
+    private static final String BY_REACHED_AT_INDEX = "by-reached-at";
+    /**
+     * Manifests, CRLs and CA certificates are usually larger than the other objects, they are stored compressed.
+     */
+    private static final int COMPRESS_ENCODED_MIN_SIZE = 1024;
 
+    /**
+     * Only the metadata of the objects, so that index scans (by type, manifests by AKI) do not have to read the
+     * encoded objects as well.
+     */
     private final IxMap<RpkiObject> ixMap;
+    /**
+     * The encoded objects, keyed by their SHA-256 hash just like the metadata.
+     */
+    private final IxMap<byte[]> encodedMap;
     private final IxMap<Long> reachableMap;
     private final MultIxMap<String> locationMap;
     private final Storage storage;
@@ -96,19 +115,36 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
                 ImmutableMap.of(
                         BY_AKI_MFT_INDEX, this::akiMftKey,
                         BY_TYPE_INDEX, this::typeKey),
-                CoderFactory.makeCoder(RpkiObject.class));
+                RpkiObjectCoder.withoutEncoded());
+        this.encodedMap = storage.createIxMap(ENCODED_MAP, ImmutableMap.of(), CoderFactory.bytesCoder(),
+                Compression.deflateDer(COMPRESS_ENCODED_MIN_SIZE));
 
-        this.reachableMap = storage.createIxMap(REACHABLE_MAP, ImmutableMap.of(), CoderFactory.longCoder());
+        this.reachableMap = storage.createIxMap(
+                REACHABLE_MAP,
+                ImmutableMap.of(BY_REACHED_AT_INDEX, reachedAt -> Key.keys(Key.of(reachedAt))),
+                CoderFactory.longCoder());
         this.locationMap = storage.createMultIxMap(LOCATION_MAP, CoderFactory.stringCoder());
 
         ixMap.onDelete((tx, k) -> {
             reachableMap.delete(tx, k);
             locationMap.delete(tx, k);
+            encodedMap.delete(tx, k);
         });
     }
 
+    /**
+     * Attach the encoded object to its metadata, unless it was stored inline by an older version.
+     */
+    private RpkiObject withEncoded(Tx.Read tx, RpkiObject rpkiObject) {
+        if (rpkiObject.getEncoded() == null) {
+            encodedMap.get(tx, rpkiObject.key()).ifPresent(rpkiObject::setEncoded);
+        }
+        return rpkiObject;
+    }
+
     @Override
     public void put(Tx.Write tx, RpkiObject o) {
+        encodedMap.put(tx, o.key(), o.getEncoded());
         ixMap.put(tx, o.key(), o);
         // mark every object as reachable at the moment of inserting, otherwise
         // we will keep the objects that have never been reached forever
@@ -121,6 +157,32 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
         addLocation(tx, o.key(), location);
     }
 
+    @Override
+    public void putAll(Tx.Write tx, List<Pair<String, RpkiObject>> objectsWithLocations) {
+        final List<Pair<String, RpkiObject>> sorted = new ArrayList<>(objectsWithLocations);
+        sorted.sort(Comparator.comparing(p -> p.getRight().getSha256(), UnsignedBytes.lexicographicalComparator()));
+
+        final Map<Key, RpkiObject> objects = new HashMap<>();
+        final Map<Key, byte[]> encoded = new HashMap<>();
+        final Map<Key, Long> reachable = new HashMap<>();
+        sorted.forEach(p -> {
+            final RpkiObject o = p.getRight();
+            final Key key = o.key();
+            // Objects are keyed by the hash of their content, so an object that is already stored does not have
+            // to be written again. This is the common case when a repository is fetched again.
+            if (!objects.containsKey(key) && !ixMap.exists(tx, key)) {
+                objects.put(key, o);
+                encoded.put(key, o.getEncoded());
+            }
+            reachable.put(key, o.getCreatedAt().toEpochMilli());
+        });
+        encodedMap.putAll(tx, encoded);
+        ixMap.putAll(tx, objects);
+        reachableMap.putAll(tx, reachable);
+
+        sorted.forEach(p -> addLocation(tx, p.getRight().key(), p.getLeft()));
+    }
+
     @Override
     public void delete(Tx.Write tx, RpkiObject o) {
         ixMap.delete(tx, o.key());
@@ -150,7 +212,25 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
 
     @Override
     public Optional<RpkiObject> get(Tx.Read tx, Key key) {
-        return ixMap.get(tx, key);
+        return ixMap.get(tx, key).map(rpkiObject -> withEncoded(tx, rpkiObject));
+    }
+
+    @Override
+    public List<RpkiObject> values(Tx.Read tx) {
+        return ixMap.values(tx).stream()
+                .map(rpkiObject -> withEncoded(tx, rpkiObject))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void clear(Tx.Write tx) {
+        ixMap.clear(tx);
+        encodedMap.clear(tx);
+    }
+
+    @Override
+    public List<Key> findKeysFrom(Tx.Read tx, Key fromKey, int limit) {
+        return ixMap.keysFrom(tx, fromKey, limit);
     }
 
     @Override
@@ -160,30 +240,30 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
 
     @Override
     public Optional<RpkiObject> findLatestMftByAKI(Tx.Read tx, byte[] authorityKeyIdentifier) {
-        return ixMap.getByIndex(BY_AKI_MFT_INDEX, tx, Key.of(authorityKeyIdentifier))
-            .values()
-            .stream()
+        return ixMap.streamByIndex(BY_AKI_MFT_INDEX, tx, Key.of(authorityKeyIdentifier))
             .max(Comparator.comparing(RpkiObject::getSigningTime)
-                .thenComparing(RpkiObject::getSerialNumber));
+                .thenComparing(RpkiObject::getSerialNumber))
+            .map(manifest -> withEncoded(tx, manifest));
     }
 
     @Override
-    public long deleteUnreachableObjects(InstantWithoutNanos unreachableSince) {
-        final List<Key> toDelete = new ArrayList<>();
-        storage.readTx0(tx ->
-                reachableMap.forEach(tx, (k, bytes) -> {
-                    if (reachableMap.toValue(bytes) < unreachableSince.toEpochMilli()) {
-                        // do not do ixMap.delete(tx, k) right here -- it will cause onDelete
-                        // trigger and deletion of pair at the current cursor position, which is
-                        // potentially a problem
-                        toDelete.add(k);
-                    }
-                }));
-        // Divide the list to smaller chunks to avoid very long writing transaction
-        Lists.partition(toDelete, 1000).forEach(chunk ->
-            storage.writeTx0(tx ->
-                chunk.forEach(pk -> ixMap.delete(tx, pk))));
-        return (long) toDelete.size();
+    public UnreachableCleanup deleteUnreachableObjects(InstantWithoutNanos unreachableSince) {
+        final long unreachableSinceMillis = unreachableSince.toEpochMilli();
+        // The index is ordered by the time the objects were last marked reachable, so only the entries older
+        // than unreachableSince are visited
+        final List<Key> candidates = new ArrayList<>(storage.readTx(tx ->
+                reachableMap.getPkByIndexLessThan(BY_REACHED_AT_INDEX, tx, Key.of(unreachableSinceMillis))));
+
+        // Divide the list to smaller chunks to avoid very long writing transaction. Objects may have been marked
+        // reachable again in the meantime, so check them again before deleting.
+        long deleted = 0;
+        for (List<Key> chunk : Lists.partition(candidates, 1000)) {
+            deleted += storage.writeTx(tx -> chunk.stream()
+                    .filter(pk -> reachableMap.get(tx, pk).map(markedAt -> markedAt < unreachableSinceMillis).orElse(false))
+                    .peek(pk -> ixMap.delete(tx, pk))
+                    .count());
+        }
+        return new UnreachableCleanup(candidates.size(), deleted);
     }
 
     @Override
@@ -201,17 +281,28 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
     }
 
     @Override
-    public Stream<byte[]> streamObjects(Tx.Read tx, RpkiObject.Type type) {
-        final List<byte[]> objectBytes = new ArrayList<>();
-        getPkByType(tx, type).forEach(pk ->
-                ixMap.get(tx, pk).ifPresent(ro ->
-                        objectBytes.add(ro.getEncoded())));
-        return objectBytes.stream();
+    public Map<String, Pair<RpkiObject, SortedSet<String>>> findObjectsWithLocationsInManifest(Tx.Read tx, ManifestCms manifestCms) {
+        // Look up the entries in key order, so that consecutive reads hit neighbouring pages of the store
+        final List<Map.Entry<String, byte[]>> entries = new ArrayList<>(manifestCms.getFiles().entrySet());
+        entries.sort(Map.Entry.comparingByValue(UnsignedBytes.lexicographicalComparator()));
+
+        final Map<String, Pair<RpkiObject, SortedSet<String>>> result = new HashMap<>(entries.size());
+        for (Map.Entry<String, byte[]> entry : entries) {
+            findBySha256(tx, entry.getValue()).ifPresent(rpkiObject ->
+                    result.put(entry.getKey(), Pair.of(rpkiObject, getLocations(tx, rpkiObject.key()))));
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<RpkiObject> streamObjects(Tx.Read tx, RpkiObject.Type type) {
+        return ixMap.streamByIndex(BY_TYPE_INDEX, tx, Key.of(type.toString()))
+                .map(rpkiObject -> withEncoded(tx, rpkiObject));
     }
 
     @Override
-    public Set<Key> getPkByType(Tx.Read tx, RpkiObject.Type type) {
-        return ixMap.getPkByIndex(BY_TYPE_INDEX, tx, Key.of(type.toString()));
+    public boolean hasType(Tx.Read tx, Key key, RpkiObject.Type type) {
+        return ixMap.hasIndexKey(BY_TYPE_INDEX, tx, Key.of(type.toString()), key);
     }
 
     @Override
@@ -220,6 +311,14 @@ public class RpkiObjectStore extends GenericStoreImpl<RpkiObject> implements Rpk
         rpkiObjectsKeys.forEach(pk -> markReachable(tx, pk, now));
     }
 
+    @Override
+    public List<Key> findNotMarkedReachableSince(Tx.Read tx, Collection<Key> rpkiObjectsKeys, InstantWithoutNanos since) {
+        final long sinceMillis = since.toEpochMilli();
+        return rpkiObjectsKeys.stream()
+                .filter(pk -> reachableMap.get(tx, pk).map(markedAt -> markedAt < sinceMillis).orElse(true))
+                .collect(Collectors.toList());
+    }
+
     @Override
     protected IxMap<RpkiObject> ixMap() {
         return ixMap;
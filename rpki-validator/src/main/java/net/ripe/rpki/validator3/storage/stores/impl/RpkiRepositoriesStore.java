@@ -154,8 +154,7 @@ public class RpkiRepositoriesStore extends GenericStoreImpl<RpkiRepository> impl
 
     @Override
     public Optional<RpkiRepository> findByURI(Tx.Read tx, String uri) {
-        return ixMap.getByIndex(BY_URI_PREFIX, tx, uriToKey(uri)).values()
-                .stream()
+        return ixMap.streamByIndex(BY_URI_PREFIX, tx, uriToKey(uri))
                 .filter(r -> uri.equals(r.getRrdpNotifyUri()) || uri.equals(r.getRsyncRepositoryUri()))
                 .findFirst();
     }
@@ -30,11 +30,13 @@
 package net.ripe.rpki.validator3.storage.stores.impl;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.api.Paging;
 import net.ripe.rpki.validator3.api.SearchTerm;
 import net.ripe.rpki.validator3.api.Sorting;
 import net.ripe.rpki.validator3.api.util.InstantWithoutNanos;
+import net.ripe.rpki.validator3.storage.Compression;
 import net.ripe.rpki.validator3.storage.IxMap;
 import net.ripe.rpki.validator3.storage.MultIxMap;
 import net.ripe.rpki.validator3.storage.Storage;
@@ -42,6 +44,7 @@ import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
 import net.ripe.rpki.validator3.storage.data.RpkiRepository;
+import net.ripe.rpki.validator3.storage.data.SortedKeySet;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.CertificateTreeValidationRun;
 import net.ripe.rpki.validator3.storage.data.validation.RpkiRepositoryValidationRun;
@@ -62,6 +65,7 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -70,7 +74,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -84,12 +87,23 @@ public class ValidationRunsStore implements ValidationRuns {
     private static final String RR_RPKI_VALIDATION_RUNS = "rrdp-repository-validation-runs";
     private static final String TA_RPKI_VALIDATION_RUNS = "trust-anchor-validation-runs";
     private static final String VALIDATION_RUNS_TO_RPKI_OBJECTS = "validation-runs-to-rpki-objects";
+    /**
+     * Validation runs with many checks are stored compressed.
+     */
+    private static final int COMPRESS_MIN_SIZE = 1024;
+    private static final String CT_VALIDATION_RUNS_TO_RPKI_OBJECT_SETS = "certificate-tree-validation-runs-to-rpki-object-sets";
+    private static final int ORPHAN_DELETE_CHUNK_SIZE = 1000;
     private static final String VALIDATION_RUNS_TO_RPKI_REPOSITORIES = "validation-runs-to-repositories";
+    private static final String LATEST_SUCCESSFUL_VALIDATION_RUNS = "latest-successful-validation-runs";
     private static final String BY_TA_INDEX = "by-ta";
     private static final String BY_COMPLETED_AT_INDEX = "by-completed-at";
+    private static final String BY_INCOMPLETE_INDEX = "by-incomplete";
+    private static final String BY_VALIDATION_RUN_INDEX = "by-validation-run";
 
     private MultIxMap<Key> vr2ro;
+    private IxMap<SortedKeySet> ct2roSet;
     private IxMap<Key> vr2repo;
+    private IxMap<Key> latestSuccessful;
 
     private IxMap<CertificateTreeValidationRun> ctIxMap;
     private IxMap<RsyncRepositoryValidationRun> rsIxMap;
@@ -104,6 +118,8 @@ public class ValidationRunsStore implements ValidationRuns {
 
     private final SequencesStore sequences;
 
+    private final Storage storage;
+
     public ValidationRunsStore(RpkiObjects rpkiObjects,
                                @Lazy TrustAnchors trustAnchors,
                                RpkiRepositories rpkiRepositories,
@@ -113,28 +129,37 @@ public class ValidationRunsStore implements ValidationRuns {
         this.rpkiRepositories = rpkiRepositories;
         this.trustAnchors = trustAnchors;
         this.sequences = sequences;
+        this.storage = storage;
 
         ctIxMap = storage.createIxMap(
                 CT_RPKI_VALIDATION_RUNS,
                 ImmutableMap.of(BY_TA_INDEX, vr -> Key.keys(vr.getTrustAnchor().key()),
-                        BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys),
-                CertificateTreeValidationRun.class);
+                        BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys,
+                        BY_INCOMPLETE_INDEX, this::incompleteIndexKeys),
+                CoderFactory.makeCoder(CertificateTreeValidationRun.class),
+                Compression.deflate(COMPRESS_MIN_SIZE));
 
         taIxMap = storage.createIxMap(
                 TA_RPKI_VALIDATION_RUNS,
                 ImmutableMap.of(BY_TA_INDEX, vr -> Key.keys(vr.getTrustAnchor().key()),
-                        BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys),
-                TrustAnchorValidationRun.class);
+                        BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys,
+                        BY_INCOMPLETE_INDEX, this::incompleteIndexKeys),
+                CoderFactory.makeCoder(TrustAnchorValidationRun.class),
+                Compression.deflate(COMPRESS_MIN_SIZE));
 
         rsIxMap = storage.createIxMap(
                 RS_RPKI_VALIDATION_RUNS,
-                ImmutableMap.of(BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys),
-                RsyncRepositoryValidationRun.class);
+                ImmutableMap.of(BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys,
+                        BY_INCOMPLETE_INDEX, this::incompleteIndexKeys),
+                CoderFactory.makeCoder(RsyncRepositoryValidationRun.class),
+                Compression.deflate(COMPRESS_MIN_SIZE));
 
         rrIxMap = storage.createIxMap(
                 RR_RPKI_VALIDATION_RUNS,
-                ImmutableMap.of(BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys),
-                RrdpRepositoryValidationRun.class);
+                ImmutableMap.of(BY_COMPLETED_AT_INDEX, this::completedAtIndexKeys,
+                        BY_INCOMPLETE_INDEX, this::incompleteIndexKeys),
+                CoderFactory.makeCoder(RrdpRepositoryValidationRun.class),
+                Compression.deflate(COMPRESS_MIN_SIZE));
 
         maps.put(CertificateTreeValidationRun.TYPE, ctIxMap);
         maps.put(TrustAnchorValidationRun.TYPE, taIxMap);
@@ -143,14 +168,21 @@ public class ValidationRunsStore implements ValidationRuns {
 
         final Coder<Key> keyCoder = CoderFactory.keyCoder();
         vr2ro = storage.createMultIxMap(VALIDATION_RUNS_TO_RPKI_OBJECTS, keyCoder);
+        ct2roSet = storage.createIxMap(CT_VALIDATION_RUNS_TO_RPKI_OBJECT_SETS, Collections.emptyMap(),
+                CoderFactory.sortedKeySetCoder(SortedKeySet.SHA256_KEY_SIZE));
         vr2repo = storage.createIxMap(VALIDATION_RUNS_TO_RPKI_REPOSITORIES, Collections.emptyMap(), keyCoder);
+        latestSuccessful = storage.createIxMap(LATEST_SUCCESSFUL_VALIDATION_RUNS,
+                ImmutableMap.of(BY_VALIDATION_RUN_INDEX, Key::keys), keyCoder);
 
         trustAnchors.onDelete(this::removeAllForTrustAnchor);
 
         maps.values().forEach(ixMap ->
                 ixMap.onDelete((tx, vrKey) -> {
                     vr2ro.delete(tx, vrKey);
+                    ct2roSet.delete(tx, vrKey);
                     vr2repo.delete(tx, vrKey);
+                    latestSuccessful.getPkByIndex(BY_VALIDATION_RUN_INDEX, tx, vrKey)
+                            .forEach(pk -> latestSuccessful.delete(tx, pk));
                 }));
     }
 
@@ -159,10 +191,86 @@ public class ValidationRunsStore implements ValidationRuns {
         return completedAt != null ? Key.keys(Key.of(completedAt.toEpochMilli())) : Collections.emptySet();
     }
 
+    /**
+     * Validation runs that never completed are indexed by the earliest of their creation and last update time,
+     * which is what decides if they are old enough to be removed.
+     */
+    private Set<Key> incompleteIndexKeys(ValidationRun vr) {
+        if (vr.getCompletedAt() != null) {
+            return Collections.emptySet();
+        }
+        InstantWithoutNanos since = vr.getCreatedAt();
+        if (vr.getUpdatedAt() != null && vr.getUpdatedAt().isBefore(since)) {
+            since = vr.getUpdatedAt();
+        }
+        return Key.keys(Key.of(since.toEpochMilli()));
+    }
+
+    /**
+     * The latest successful run is remembered per type, and per trust anchor for the types that belong to one.
+     */
+    private static Key latestSuccessfulKey(String type, Optional<Key> trustAnchorKey) {
+        final Key typeKey = Key.of(type);
+        return trustAnchorKey.map(typeKey::concat).orElse(typeKey);
+    }
+
+    private static Optional<Key> trustAnchorKey(ValidationRun vr) {
+        if (vr instanceof CertificateTreeValidationRun) {
+            return Optional.of(((CertificateTreeValidationRun) vr).getTrustAnchor().key());
+        }
+        if (vr instanceof TrustAnchorValidationRun) {
+            return Optional.of(((TrustAnchorValidationRun) vr).getTrustAnchor().key());
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isPerTrustAnchor(String type) {
+        return CertificateTreeValidationRun.TYPE.equals(type) || TrustAnchorValidationRun.TYPE.equals(type);
+    }
+
+    private void updateLatestSuccessful(Tx.Write tx, ValidationRun vr) {
+        final Key pointerKey = latestSuccessfulKey(vr.getType(), trustAnchorKey(vr));
+        final Optional<Key> current = latestSuccessful.get(tx, pointerKey);
+        if (!vr.isSucceeded() || vr.getCompletedAt() == null) {
+            if (current.filter(vr.key()::equals).isPresent()) {
+                latestSuccessful.delete(tx, pointerKey);
+            }
+            return;
+        }
+        if (current.filter(vr.key()::equals).isPresent()) {
+            return;
+        }
+        final boolean isLatest = current
+                .flatMap(vrKey -> pickIxMap(vr.getType()).get(tx, vrKey))
+                .map(ValidationRun::getCompletedAt)
+                .map(latestCompletedAt -> !vr.getCompletedAt().isBefore(latestCompletedAt))
+                .orElse(true);
+        if (isLatest) {
+            latestSuccessful.put(tx, pointerKey, vr.key());
+        }
+    }
+
+    /**
+     * Runs stored before the latest successful ones were remembered are looked up once using the completion time
+     * index, every later run keeps the pointer up to date.
+     */
+    private Set<Key> latestSuccessfulKeys(Tx.Write tx, String type, Optional<Key> trustAnchorKey) {
+        final Key pointerKey = latestSuccessfulKey(type, trustAnchorKey);
+        final Optional<Key> pointer = latestSuccessful.get(tx, pointerKey);
+        if (pointer.isPresent()) {
+            return Collections.singleton(pointer.get());
+        }
+        final Map<Key, ? extends ValidationRun> latest = pickIxMap(type).getByIdxDescendingWhere(BY_COMPLETED_AT_INDEX, tx,
+                vr -> vr.isSucceeded() && trustAnchorKey.equals(trustAnchorKey(vr)));
+        latest.keySet().stream().findFirst().ifPresent(vrKey -> latestSuccessful.put(tx, pointerKey, vrKey));
+        return latest.keySet();
+    }
+
     @Override
     public <T extends ValidationRun> T add(Tx.Write tx, T vr) {
         vr.setId(Key.of(sequences.next(tx, RPKI_VALIDATION_RUNS + ":pk")));
         pickIxMap(vr.getType()).put(tx, vr.key(), vr);
+        updateLatestSuccessful(tx, vr);
         return vr;
     }
 
@@ -170,6 +278,7 @@ public class ValidationRunsStore implements ValidationRuns {
     public <T extends ValidationRun> void update(Tx.Write tx, T vr) {
         vr.setUpdatedAt(InstantWithoutNanos.now());
         pickIxMap(vr.getType()).put(tx, vr.key(), vr);
+        updateLatestSuccessful(tx, vr);
     }
 
     @Override
@@ -212,6 +321,12 @@ public class ValidationRunsStore implements ValidationRuns {
 
     @Override
     public Optional<CertificateTreeValidationRun> findLatestSuccessfulCaTreeValidationRun(Tx.Read tx, TrustAnchor trustAnchor) {
+        final Optional<CertificateTreeValidationRun> latest = latestSuccessful
+                .get(tx, latestSuccessfulKey(CertificateTreeValidationRun.TYPE, Optional.of(trustAnchor.key())))
+                .flatMap(vrKey -> ctIxMap.get(tx, vrKey));
+        if (latest.isPresent()) {
+            return latest;
+        }
         return ctIxMap.getByIdxDescendingWhere(BY_COMPLETED_AT_INDEX, tx, vr ->
                 vr.isSucceeded() && trustAnchor.key().equals(vr.getTrustAnchor().key())).values().stream().findFirst();
     }
@@ -236,73 +351,75 @@ public class ValidationRunsStore implements ValidationRuns {
 
     @Override
     public int removeOldValidationRuns(Tx.Write tx, InstantWithoutNanos completedBefore) {
-        final AtomicInteger count = new AtomicInteger(0);
+        final Key cutoff = Key.of(completedBefore.toEpochMilli());
         final Set<Key> taKeys = trustAnchors.keys(tx);
-        maps.forEach((type, ixMap) -> {
+        int count = 0;
+        for (Map.Entry<String, IxMap<? extends ValidationRun>> entry : maps.entrySet()) {
+            final String type = entry.getKey();
+            final IxMap<? extends ValidationRun> ixMap = entry.getValue();
+
             // Don't delete the most recent one successful for every trust anchor
-            final Set<Key> latestSuccessfulKeys = taKeys.stream().flatMap(taKey ->
-                    ixMap.getByIdxDescendingWhere(BY_COMPLETED_AT_INDEX, tx, vr -> {
-                                if (vr instanceof CertificateTreeValidationRun) {
-                                    return taKey.equals(((CertificateTreeValidationRun) vr).getTrustAnchor().key()) && vr.isSucceeded();
-                                }
-                                if (vr instanceof TrustAnchorValidationRun) {
-                                    return taKey.equals(((TrustAnchorValidationRun) vr).getTrustAnchor().key()) && vr.isSucceeded();
-                                }
-                                return vr.isSucceeded();
-                            }
-                    ).keySet().stream())
-                    .collect(Collectors.toSet());
-
-//            final Set<Key> latestSuccessfulKeys = ixMap.getByIdxDescendingWhere(BY_COMPLETED_AT_INDEX, tx, ValidationRun::isSucceeded).keySet();
-
-            final Set<Key> toDelete = new HashSet<>();
-            ixMap.forEach(tx, (k, bytes) -> {
-                ValidationRun validationRun = ixMap.toValue(bytes);
-                boolean deleteIt = false;
-                if (validationRun.getCompletedAt() != null) {
-                    if (validationRun.getCompletedAt().isBefore(completedBefore)) {
-                        deleteIt = true;
-                    }
-                } else {
-                    if (validationRun.getUpdatedAt() != null && validationRun.getUpdatedAt().isBefore(completedBefore)) {
-                        deleteIt = true;
-                    } else if (validationRun.getCreatedAt().isBefore(completedBefore)) {
-                        deleteIt = true;
-                    }
-                }
-                if (deleteIt && !latestSuccessfulKeys.contains(k)) {
-                    toDelete.add(k);
-                }
-            });
+            final Set<Key> latestSuccessfulKeys = new HashSet<>();
+            if (isPerTrustAnchor(type)) {
+                taKeys.forEach(taKey -> latestSuccessfulKeys.addAll(latestSuccessfulKeys(tx, type, Optional.of(taKey))));
+            } else if (!taKeys.isEmpty()) {
+                latestSuccessfulKeys.addAll(latestSuccessfulKeys(tx, type, Optional.empty()));
+            }
+
+            final Set<Key> toDelete = new HashSet<>(ixMap.getPkByIndexLessThan(BY_COMPLETED_AT_INDEX, tx, cutoff));
+            toDelete.addAll(ixMap.getPkByIndexLessThan(BY_INCOMPLETE_INDEX, tx, cutoff));
+            toDelete.removeAll(latestSuccessfulKeys);
             toDelete.forEach(pk -> ixMap.delete(tx, pk));
-            count.addAndGet(toDelete.size());
-        });
-        return count.get();
+            count += toDelete.size();
+        }
+        return count;
     }
 
     @Override
-    public int removeOrphanValidationRunAssociations(Tx.Write tx) {
-        final Set<Key> roKeys = rpkiObjects.keys(tx);
-        final Set<Key> repoKeys = rpkiRepositories.keys(tx);
-        final List<Pair<Key, Key>> toDelete = new ArrayList<>();
-        vr2ro.forEach(tx, (vrKey, bytes) -> {
-            final Key roKey = vr2ro.toValue(bytes);
-            if (!roKeys.contains(roKey)) {
-                toDelete.add(Pair.of(vrKey, roKey));
-            }
-        });
-        int c1 = toDelete.size();
-        vr2ro.deleteBatch(tx, toDelete);
-
-        final Set<Key> reposToDelete = new HashSet<>();
-        vr2repo.forEach(tx, (vrKey, bytes) -> {
-            final Key repoKey = vr2repo.toValue(bytes);
-            if (!repoKeys.contains(repoKey)) {
-                reposToDelete.add(vrKey);
-            }
+    public int removeOrphanValidationRunAssociations() {
+        // Look up every associated object and repository instead of loading all their keys in memory. Only the
+        // orphans are kept, and they are deleted in small transactions to not hold up other writers.
+        final List<Pair<Key, Key>> orphanObjects = new ArrayList<>();
+        final List<Pair<Key, Key>> orphanRepositories = new ArrayList<>();
+        storage.readTx0(tx -> {
+            vr2ro.forEach(tx, (vrKey, bytes) -> {
+                final Key roKey = vr2ro.toValue(bytes);
+                if (!rpkiObjects.exists(tx, roKey)) {
+                    orphanObjects.add(Pair.of(vrKey, roKey));
+                }
+            });
+            vr2repo.forEach(tx, (vrKey, bytes) -> {
+                final Key repoKey = vr2repo.toValue(bytes);
+                if (!rpkiRepositories.exists(tx, repoKey)) {
+                    orphanRepositories.add(Pair.of(vrKey, repoKey));
+                }
+            });
         });
-        reposToDelete.forEach(vrKey -> vr2repo.delete(tx, vrKey));
-        return c1 + reposToDelete.size();
+
+        // Objects or repositories may have been added again in the meantime, so check them again before deleting
+        int removed = 0;
+        for (List<Pair<Key, Key>> chunk : Lists.partition(orphanObjects, ORPHAN_DELETE_CHUNK_SIZE)) {
+            removed += storage.writeTx(tx -> {
+                final List<Pair<Key, Key>> toDelete = chunk.stream()
+                        .filter(p -> !rpkiObjects.exists(tx, p.getRight()))
+                        .collect(Collectors.toList());
+                vr2ro.deleteBatch(tx, toDelete);
+                return toDelete.size();
+            });
+        }
+        for (List<Pair<Key, Key>> chunk : Lists.partition(orphanRepositories, ORPHAN_DELETE_CHUNK_SIZE)) {
+            removed += storage.writeTx(tx -> {
+                int count = 0;
+                for (Pair<Key, Key> p : chunk) {
+                    if (!rpkiRepositories.exists(tx, p.getRight()) && vr2repo.get(tx, p.getLeft()).filter(p.getRight()::equals).isPresent()) {
+                        vr2repo.delete(tx, p.getLeft());
+                        count++;
+                    }
+                }
+                return count;
+            });
+        }
+        return removed;
     }
 
     @Override
@@ -390,8 +507,8 @@ public class ValidationRunsStore implements ValidationRuns {
     }
 
     @Override
-    public void associateRpkiObjectKey(Tx.Write tx, CertificateTreeValidationRun validationRun, Key rpkiObjectKey) {
-        vr2ro.put(tx, validationRun.key(), rpkiObjectKey);
+    public void associateRpkiObjectKeys(Tx.Write tx, CertificateTreeValidationRun validationRun, Collection<Key> rpkiObjectKeys) {
+        ct2roSet.put(tx, validationRun.key(), SortedKeySet.of(SortedKeySet.SHA256_KEY_SIZE, rpkiObjectKeys));
     }
 
     @Override
@@ -401,17 +518,25 @@ public class ValidationRunsStore implements ValidationRuns {
 
     @Override
     public Set<Key> findAssociatedPks(Tx.Read tx, CertificateTreeValidationRun validationRun) {
-        return new HashSet<>(vr2ro.get(tx, validationRun.key()));
+        return associatedKeys(tx, validationRun.key()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Certificate tree validation runs store their objects as a single set, runs stored by older versions still have
+     * one association per object.
+     */
+    private Stream<Key> associatedKeys(Tx.Read tx, Key validationRunKey) {
+        return ct2roSet.get(tx, validationRunKey)
+                .map(SortedKeySet::stream)
+                .orElseGet(() -> vr2ro.get(tx, validationRunKey).stream());
     }
 
     @Override
     public Stream<Pair<CertificateTreeValidationRun, RpkiObject>> findCurrentlyValidated(Tx.Read tx, RpkiObject.Type type) {
-        final Set<Key> byType = rpkiObjects.getPkByType(tx, type);
         return findLatestSuccessful(tx, CertificateTreeValidationRun.class)
                 .stream()
-                .flatMap(ct -> vr2ro.get(tx, ct.key())
-                        .stream()
-                        .filter(byType::contains)
+                .flatMap(ct -> associatedKeys(tx, ct.key())
+                        .filter(roKey -> rpkiObjects.hasType(tx, roKey, type))
                         .map(roKey -> rpkiObjects.get(tx, roKey))
                         .filter(Optional::isPresent)
                         .map(Optional::get)
@@ -421,13 +546,15 @@ public class ValidationRunsStore implements ValidationRuns {
 
     @Override
     public void clear(Tx.Write tx) {
-        Stream.of(vr2ro, vr2repo, ctIxMap, taIxMap, rsIxMap, rrIxMap)
+        Stream.of(vr2ro, ct2roSet, vr2repo, latestSuccessful, ctIxMap, taIxMap, rsIxMap, rrIxMap)
                 .forEach(ixMap -> ixMap.clear(tx));
     }
 
     @Override
     public int getObjectCount(Tx.Read tx, ValidationRun validationRun) {
-        return vr2ro.count(tx, validationRun.key());
+        return ct2roSet.get(tx, validationRun.key())
+                .map(SortedKeySet::size)
+                .orElseGet(() -> vr2ro.count(tx, validationRun.key()));
     }
 
     @SuppressWarnings("unchecked")
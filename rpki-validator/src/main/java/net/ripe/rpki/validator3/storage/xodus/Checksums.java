@@ -0,0 +1,99 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * The checksum that is stored in the first 8 bytes of every value.
+ *
+ * Values were originally stored with a CRC32, which only uses the lower 32 bits. A CRC32C (which is computed with
+ * dedicated CPU instructions on modern hardware) is marked by setting bit 32, so that values written with either
+ * algorithm can always be verified, whatever algorithm is configured for new values. Bit 33 marks values that are
+ * stored compressed, the checksum is computed over the stored (compressed) bytes.
+ */
+@Getter
+class Checksums {
+
+    enum Algorithm { CRC32, CRC32C }
+
+    private static final long CRC32C_MARKER = 1L << 32;
+    static final long COMPRESSED = 1L << 33;
+
+    static final Checksums DEFAULT = new Checksums(Algorithm.CRC32C, 1.0);
+
+    private final Algorithm algorithm;
+    private final double verifyFraction;
+
+    Checksums(Algorithm algorithm, double verifyFraction) {
+        if (verifyFraction < 0 || verifyFraction > 1) {
+            throw new IllegalArgumentException("The fraction of reads to verify must be between 0 and 1, got " + verifyFraction);
+        }
+        this.algorithm = algorithm;
+        this.verifyFraction = verifyFraction;
+    }
+
+    static long checksum(Algorithm algorithm, byte[] b, int offset, int length) {
+        switch (algorithm) {
+            case CRC32C:
+                final CRC32C crc32c = new CRC32C();
+                crc32c.update(b, offset, length);
+                return CRC32C_MARKER | crc32c.getValue();
+            case CRC32:
+            default:
+                final CRC32 crc32 = new CRC32();
+                crc32.update(b, offset, length);
+                return crc32.getValue();
+        }
+    }
+
+    /**
+     * @return true if <code>stored</code> is the checksum of the bytes, using the algorithm it was computed with.
+     */
+    static boolean matches(long stored, byte[] b, int offset, int length) {
+        final Algorithm algorithm = (stored & CRC32C_MARKER) != 0 ? Algorithm.CRC32C : Algorithm.CRC32;
+        return checksum(algorithm, b, offset, length) == (stored & ~COMPRESSED);
+    }
+
+    static boolean isCompressed(long stored) {
+        return (stored & COMPRESSED) != 0;
+    }
+
+    /**
+     * @return true if the checksum of the value that is being read should be verified.
+     */
+    boolean verifyRead() {
+        return verifyFraction >= 1.0 || (verifyFraction > 0 && ThreadLocalRandom.current().nextDouble() < verifyFraction);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Store;
+import net.ripe.rpki.validator3.storage.Tx;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks a cursor of a store and closes it as soon as the walk is finished, the stream is closed or the
+ * transaction ends, whichever comes first.
+ *
+ * The stream is bound to the transaction: it has to be consumed within the transaction and in the thread that owns
+ * it, so it is never split for parallel processing.
+ */
+class CursorSpliterator<R> implements Spliterator<R> {
+
+    private final XodusTx tx;
+    private final Cursor cursor;
+    private final Predicate<Cursor> first;
+    private final Predicate<Cursor> next;
+    private final Predicate<Cursor> inRange;
+    private final Function<Cursor, R> mapper;
+
+    private boolean started = false;
+    private boolean done = false;
+
+    private CursorSpliterator(XodusTx tx, Store store,
+                              Predicate<Cursor> first,
+                              Predicate<Cursor> next,
+                              Predicate<Cursor> inRange,
+                              Function<Cursor, R> mapper) {
+        this.tx = tx;
+        this.cursor = tx.openCursor(store);
+        this.first = first;
+        this.next = next;
+        this.inRange = inRange;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param first   positions the cursor at the first entry, returns false if there is none.
+     * @param next    moves the cursor to the next entry, returns false if there is none.
+     * @param inRange returns false when the current entry is past the end of the range.
+     * @param mapper  extracts the result from the current entry.
+     */
+    static <R> Stream<R> stream(Tx.Read tx, Store store,
+                                Predicate<Cursor> first,
+                                Predicate<Cursor> next,
+                                Predicate<Cursor> inRange,
+                                Function<Cursor, R> mapper) {
+        final CursorSpliterator<R> spliterator = new CursorSpliterator<>((XodusTx) tx, store, first, next, inRange, mapper);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::finish);
+    }
+
+    static <R> Stream<R> stream(Tx.Read tx, Store store, Function<Cursor, R> mapper) {
+        return stream(tx, store, Cursor::getNext, Cursor::getNext, c -> true, mapper);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        if (done) {
+            return false;
+        }
+        final boolean found = started ? next.test(cursor) : first.test(cursor);
+        started = true;
+        if (!found || !inRange.test(cursor)) {
+            finish();
+            return false;
+        }
+        action.accept(mapper.apply(cursor));
+        return true;
+    }
+
+    private void finish() {
+        if (!done) {
+            done = true;
+            tx.closeCursor(cursor);
+        }
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.validator3.storage.Tx;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces write transactions of different threads into a single Xodus transaction, so that they share a single
+ * (durable) commit.
+ *
+ * The first thread that submits a transaction becomes the leader: it waits for at most the commit window for other
+ * threads to submit their transactions and then executes all of them, one after the other, in one transaction. The
+ * other threads wait for the result. When the group is committed, leadership passes on to the oldest waiting thread.
+ *
+ * Transactions of a group share their fate, so when one of them fails or aborts all of them are executed again,
+ * each in its own transaction. This means the functions may be executed more than once, so side effects outside
+ * the storage must be registered as {@link Tx.Write#afterCommit(Runnable)} hooks. These hooks are executed by the
+ * thread that submitted the transaction, after the group is committed.
+ */
+@Slf4j
+class GroupCommit {
+
+    /**
+     * Executes a group of transactions in one physical transaction, and a single transaction in its own.
+     */
+    interface Executor {
+        void executeGroup(List<Request<?>> group);
+
+        <T> Outcome<T> executeSingle(Function<Tx.Write, T> f);
+    }
+
+    static class Outcome<T> {
+        final T result;
+        final List<Runnable> afterCommitHooks;
+
+        Outcome(T result, List<Runnable> afterCommitHooks) {
+            this.result = result;
+            this.afterCommitHooks = afterCommitHooks;
+        }
+    }
+
+    static class Request<T> {
+        final Function<Tx.Write, T> f;
+        private Outcome<T> outcome;
+        private RuntimeException failure;
+        private boolean done;
+        private boolean leader;
+
+        private Request(Function<Tx.Write, T> f) {
+            this.f = f;
+        }
+
+        void complete(T result, List<Runnable> afterCommitHooks) {
+            this.outcome = new Outcome<>(result, afterCommitHooks);
+        }
+    }
+
+    private final Duration window;
+    private final int maxGroupSize;
+    private final Executor executor;
+
+    private final Deque<Request<?>> pending = new ArrayDeque<>();
+    private boolean leaderActive = false;
+
+    GroupCommit(Duration window, int maxGroupSize, Executor executor) {
+        this.window = window;
+        this.maxGroupSize = maxGroupSize;
+        this.executor = executor;
+    }
+
+    <T> Outcome<T> submit(Function<Tx.Write, T> f) {
+        final Request<T> request = new Request<>(f);
+        boolean interrupted = false;
+        synchronized (this) {
+            pending.add(request);
+            if (leaderActive) {
+                // wake up the leader in case the group is complete
+                notifyAll();
+            } else {
+                leaderActive = true;
+                request.leader = true;
+            }
+            while (!request.leader && !request.done) {
+                interrupted |= await(0);
+            }
+        }
+        if (!request.done) {
+            interrupted |= lead();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        return request.outcome;
+    }
+
+    /**
+     * @return true if the thread was interrupted while waiting for the group to fill up.
+     */
+    private boolean lead() {
+        final List<Request<?>> group = new ArrayList<>();
+        boolean interrupted = false;
+        synchronized (this) {
+            final long deadline = System.nanoTime() + window.toNanos();
+            long remaining;
+            while (pending.size() < maxGroupSize && (remaining = deadline - System.nanoTime()) > 0) {
+                interrupted |= await(remaining);
+            }
+            while (!pending.isEmpty() && group.size() < maxGroupSize) {
+                group.add(pending.poll());
+            }
+        }
+
+        try {
+            execute(group);
+        } finally {
+            synchronized (this) {
+                group.forEach(r -> {
+                    if (r.outcome == null && r.failure == null) {
+                        r.failure = new IllegalStateException("Transaction group failed");
+                    }
+                    r.done = true;
+                });
+                final Request<?> next = pending.peek();
+                if (next == null) {
+                    leaderActive = false;
+                } else {
+                    next.leader = true;
+                }
+                notifyAll();
+            }
+        }
+        return interrupted;
+    }
+
+    private void execute(List<Request<?>> group) {
+        if (group.size() > 1) {
+            try {
+                executor.executeGroup(group);
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Group of {} transactions failed, executing them one by one", group.size(), e);
+                group.forEach(r -> r.outcome = null);
+            }
+        }
+        group.forEach(this::executeSingle);
+    }
+
+    private <T> void executeSingle(Request<T> request) {
+        try {
+            request.outcome = executor.executeSingle(request.f);
+        } catch (RuntimeException e) {
+            request.failure = e;
+        }
+    }
+
+    /**
+     * Transactions cannot be cancelled once submitted, so interrupts are only remembered.
+     *
+     * @return true if the thread was interrupted while waiting.
+     */
+    private boolean await(long nanos) {
+        try {
+            if (nanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            } else {
+                wait();
+            }
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+}
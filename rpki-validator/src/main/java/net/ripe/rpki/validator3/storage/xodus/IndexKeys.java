@@ -0,0 +1,97 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import net.ripe.rpki.validator3.storage.data.Key;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary format of the index keys of a single value, by index name:
+ * <pre>
+ *     count, (name length, name, key count, (key length, key)*)*
+ * </pre>
+ */
+class IndexKeys {
+
+    private IndexKeys() {
+    }
+
+    static ByteIterable toByteIterable(Map<String, Set<Key>> indexKeys) {
+        int size = Integer.BYTES;
+        for (Map.Entry<String, Set<Key>> e : indexKeys.entrySet()) {
+            size += Short.BYTES + e.getKey().getBytes(UTF_8).length + Integer.BYTES;
+            for (Key key : e.getValue()) {
+                size += Integer.BYTES + key.size();
+            }
+        }
+
+        final ByteBuffer bb = ByteBuffer.allocate(size);
+        bb.putInt(indexKeys.size());
+        indexKeys.forEach((name, keys) -> {
+            final byte[] nameBytes = name.getBytes(UTF_8);
+            bb.putShort((short) nameBytes.length);
+            bb.put(nameBytes);
+            bb.putInt(keys.size());
+            keys.forEach(key -> {
+                bb.putInt(key.size());
+                bb.put(key.getBytes());
+            });
+        });
+        return new ArrayByteIterable(bb.array());
+    }
+
+    static Map<String, Set<Key>> fromBytes(byte[] bytes) {
+        final ByteBuffer bb = ByteBuffer.wrap(bytes);
+        final int count = bb.getInt();
+        final Map<String, Set<Key>> indexKeys = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] nameBytes = new byte[bb.getShort()];
+            bb.get(nameBytes);
+            final int keyCount = bb.getInt();
+            final Set<Key> keys = new HashSet<>(keyCount);
+            for (int k = 0; k < keyCount; k++) {
+                final byte[] key = new byte[bb.getInt()];
+                bb.get(key);
+                keys.add(Key.of(key));
+            }
+            indexKeys.put(new String(nameBytes, UTF_8), keys);
+        }
+        return indexKeys;
+    }
+}
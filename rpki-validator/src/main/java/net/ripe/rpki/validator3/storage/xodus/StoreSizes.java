@@ -0,0 +1,186 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import lombok.Getter;
+import lombok.Value;
+import net.ripe.rpki.validator3.storage.Bytes;
+import net.ripe.rpki.validator3.storage.data.Key;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The number of entries and the bytes of the keys and values of every store, kept up to date by the write
+ * transactions themselves so that they can be reported without scanning the stores.
+ *
+ * The changes of a transaction are persisted in the metadata store as part of that transaction, and published in
+ * memory once it has committed. Every persisted update gets a new version, so that publishing the updates of a
+ * group commit in a different order than they were made does not go back to an older size.
+ */
+class StoreSizes {
+
+    private final Environment env;
+    private final Supplier<Store> meta;
+    private final MeterRegistry registry;
+    private final Map<String, Size> published = new ConcurrentHashMap<>();
+
+    StoreSizes(Environment env, Supplier<Store> meta, MeterRegistry registry) {
+        this.env = env;
+        this.meta = meta;
+        this.registry = registry;
+    }
+
+    @Value
+    static class Size {
+        long version;
+        long count;
+        long bytes;
+
+        static final Size EMPTY = new Size(0, 0, 0);
+
+        ByteIterable toByteIterable() {
+            return new ArrayByteIterable(ByteBuffer.allocate(3 * Long.BYTES)
+                    .putLong(version).putLong(count).putLong(bytes).array());
+        }
+
+        static Size fromBytes(byte[] bytes) {
+            final ByteBuffer bb = ByteBuffer.wrap(bytes);
+            return new Size(bb.getLong(), bb.getLong(), bb.getLong());
+        }
+    }
+
+    /**
+     * Changes made to a store by a single transaction.
+     */
+    @Getter
+    static class Change {
+        private boolean truncated;
+        private long count;
+        private long bytes;
+
+        void add(long count, long bytes) {
+            this.count += count;
+            this.bytes += bytes;
+        }
+
+        void truncated() {
+            truncated = true;
+            count = 0;
+            bytes = 0;
+        }
+    }
+
+    /**
+     * @return the size of the store as of the last committed change, without touching the database.
+     */
+    Size get(String storeName) {
+        return published.getOrDefault(storeName, Size.EMPTY);
+    }
+
+    /**
+     * Make sure the size of the store is known, counting its entries once if it was never recorded, for example
+     * for databases created before the sizes were kept.
+     */
+    void init(Store store) {
+        final String storeName = store.getName();
+        final Size size = env.computeInExclusiveTransaction(txn -> {
+            final ByteIterable stored = meta.get().get(txn, key(storeName));
+            if (stored != null) {
+                return Size.fromBytes(Bytes.toBytes(stored));
+            }
+            long count = 0;
+            long bytes = 0;
+            try (Cursor c = store.openCursor(txn)) {
+                while (c.getNext()) {
+                    count++;
+                    bytes += c.getKey().getLength() + c.getValue().getLength();
+                }
+            }
+            final Size counted = new Size(1, count, bytes);
+            meta.get().put(txn, key(storeName), counted.toByteIterable());
+            return counted;
+        });
+        publish(storeName, size);
+        if (registry != null) {
+            Gauge.builder("rpkivalidator.storage.store.entries", this, s -> s.get(storeName).getCount())
+                .description("Number of entries in the store")
+                .tag("store", storeName)
+                .register(registry);
+            Gauge.builder("rpkivalidator.storage.store.bytes", this, s -> s.get(storeName).getBytes())
+                .description("Size of the keys and values in the store")
+                .baseUnit("bytes")
+                .tag("store", storeName)
+                .register(registry);
+        }
+    }
+
+    /**
+     * Persist the changes as part of <code>txn</code>.
+     *
+     * @return the new sizes, to be published after <code>txn</code> committed.
+     */
+    Map<String, Size> apply(Transaction txn, Map<String, Change> changes) {
+        final Map<String, Size> updated = new HashMap<>();
+        changes.forEach((storeName, change) -> {
+            final ByteIterable stored = meta.get().get(txn, key(storeName));
+            final Size current = stored == null ? Size.EMPTY : Size.fromBytes(Bytes.toBytes(stored));
+            final Size size = change.isTruncated()
+                    ? new Size(current.getVersion() + 1, change.getCount(), change.getBytes())
+                    : new Size(current.getVersion() + 1, current.getCount() + change.getCount(), current.getBytes() + change.getBytes());
+            meta.get().put(txn, key(storeName), size.toByteIterable());
+            updated.put(storeName, size);
+        });
+        return updated;
+    }
+
+    void publish(Map<String, Size> sizes) {
+        sizes.forEach(this::publish);
+    }
+
+    private void publish(String storeName, Size size) {
+        published.merge(storeName, size, (current, next) -> next.getVersion() > current.getVersion() ? next : current);
+    }
+
+    private static ByteIterable key(String storeName) {
+        return Key.of(storeName + "-sizes").toByteIterable();
+    }
+}
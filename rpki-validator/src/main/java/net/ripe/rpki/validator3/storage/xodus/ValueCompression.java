@@ -0,0 +1,233 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import net.ripe.rpki.validator3.storage.Compression;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Deflates the values of a map that opted in to compression.
+ *
+ * A compressed value starts with the id of the preset dictionary that was used and the length of the uncompressed
+ * value, followed by the zlib stream. The dictionaries are part of the storage format: they can never change once
+ * values were compressed with them, a new dictionary needs a new id.
+ */
+class ValueCompression {
+
+    private static final byte NO_DICTIONARY = 0;
+    private static final byte DER_DICTIONARY = 1;
+    private static final int HEADER_BYTES = 1 + Integer.BYTES;
+    /**
+     * Deflate cannot compress better than about 1032:1, a larger uncompressed length can only come from a corrupted
+     * header.
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /**
+     * Object identifiers of the signature and digest algorithms, CMS content types and attributes, and certificate
+     * and CRL extensions used by RPKI objects. Zlib finds matches in the end of the dictionary more cheaply, so the
+     * most common ones are last.
+     */
+    private static final List<String> DER_OIDS = Arrays.asList(
+            "2.5.4.5",                      // serialNumber
+            "1.2.840.113549.1.9.16.1.35",   // id-ct-rpkiGhostbusters
+            "1.3.6.1.5.5.7.48.13",          // id-ad-rpkiNotify
+            "2.5.29.20",                    // cRLNumber
+            "1.3.6.1.5.5.7.1.8",            // id-pe-autonomousSysIds
+            "1.3.6.1.5.5.7.48.10",          // id-ad-rpkiManifest
+            "1.3.6.1.5.5.7.48.5",           // id-ad-caRepository
+            "1.2.840.113549.1.9.16.1.26",   // id-ct-rpkiManifest
+            "1.2.840.113549.1.9.16.1.24",   // id-ct-routeOriginAuthz
+            "1.2.840.113549.1.7.2",         // signedData
+            "1.2.840.113549.1.9.3",         // contentType
+            "1.2.840.113549.1.9.4",         // messageDigest
+            "1.2.840.113549.1.9.5",         // signingTime
+            "1.3.6.1.5.5.7.1.7",            // id-pe-ipAddrBlocks
+            "1.3.6.1.5.5.7.14.2",           // id-cp-ipAddr-asNumber
+            "2.5.29.32",                    // certificatePolicies
+            "2.5.29.19",                    // basicConstraints
+            "2.5.29.15",                    // keyUsage
+            "2.5.29.31",                    // cRLDistributionPoints
+            "1.3.6.1.5.5.7.48.2",           // id-ad-caIssuers
+            "1.3.6.1.5.5.7.1.1",            // authorityInfoAccess
+            "1.3.6.1.5.5.7.48.11",          // id-ad-signedObject
+            "1.3.6.1.5.5.7.1.11",           // subjectInfoAccess
+            "2.5.29.14",                    // subjectKeyIdentifier
+            "2.5.29.35",                    // authorityKeyIdentifier
+            "2.5.4.3",                      // commonName
+            "2.16.840.1.101.3.4.2.1",       // sha256
+            "1.2.840.113549.1.1.1",         // rsaEncryption
+            "1.2.840.113549.1.1.11"         // sha256WithRSAEncryption
+    );
+
+    private static final List<String> DER_STRINGS = Arrays.asList(
+            ".gbr", "https://", "notification.xml", ".roa", ".crl", ".mft", ".cer", "rsync://"
+    );
+
+    private static final byte[] DER = derDictionary();
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final int minSize;
+    private final byte dictionaryId;
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    ValueCompression(Compression compression) {
+        this.minSize = compression.getMinSize();
+        this.dictionaryId = compression.getDictionary() == Compression.Dictionary.DER ? DER_DICTIONARY : NO_DICTIONARY;
+    }
+
+    /**
+     * @return the compressed value with room for <code>prefixLength</code> bytes in front of it, or null if the
+     * value is too small to compress or did not get any smaller.
+     */
+    byte[] compress(byte[] b, int offset, int length, int prefixLength) {
+        if (length < minSize) {
+            return null;
+        }
+        final Deflater deflater = DEFLATER.get();
+        try {
+            final byte[] dictionary = dictionary(dictionaryId);
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(b, offset, length);
+            deflater.finish();
+            // Only worth it if the compressed value is smaller, so the output never has to grow
+            final byte[] out = new byte[prefixLength + length];
+            final int start = prefixLength + HEADER_BYTES;
+            int written = 0;
+            while (!deflater.finished() && start + written < out.length) {
+                written += deflater.deflate(out, start + written, out.length - start - written);
+            }
+            uncompressedBytes.addAndGet(length);
+            if (!deflater.finished()) {
+                storedBytes.addAndGet(length);
+                return null;
+            }
+            storedBytes.addAndGet(HEADER_BYTES + written);
+            ByteBuffer.wrap(out, prefixLength, HEADER_BYTES).put(dictionaryId).putInt(length);
+            return Arrays.copyOf(out, start + written);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the compressed value is invalid.
+     */
+    static byte[] decompress(byte[] b, int offset, int length) {
+        if (length < HEADER_BYTES) {
+            throw new IllegalStateException("Compressed value is truncated");
+        }
+        final ByteBuffer header = ByteBuffer.wrap(b, offset, HEADER_BYTES);
+        final byte dictionaryId = header.get();
+        final int uncompressedLength = header.getInt();
+        // Check the length before allocating, so that a corrupted header cannot request a huge array
+        if (uncompressedLength < 0 || uncompressedLength > (long) (length - HEADER_BYTES) * MAX_DEFLATE_RATIO) {
+            throw new IllegalStateException("Invalid uncompressed length " + uncompressedLength);
+        }
+        final byte[] out = new byte[uncompressedLength];
+        final Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(b, offset + HEADER_BYTES, length - HEADER_BYTES);
+            int read = 0;
+            while (read < out.length) {
+                final int n = inflater.inflate(out, read, out.length - read);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        final byte[] dictionary = dictionary(dictionaryId);
+                        if (dictionary == null) {
+                            throw new IllegalStateException("Unknown compression dictionary " + dictionaryId);
+                        }
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IllegalStateException("Compressed value is truncated");
+                    }
+                }
+                read += n;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed value is invalid", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * @return the size of the values that could be compressed divided by their stored size, since start up.
+     */
+    double getRatio() {
+        final long stored = storedBytes.get();
+        return stored == 0 ? 1.0 : (double) uncompressedBytes.get() / stored;
+    }
+
+    private static byte[] dictionary(byte id) {
+        switch (id) {
+            case NO_DICTIONARY:
+                return null;
+            case DER_DICTIONARY:
+                return DER;
+            default:
+                throw new IllegalStateException("Unknown compression dictionary " + id);
+        }
+    }
+
+    private static byte[] derDictionary() {
+        try {
+            final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+            for (String s : DER_STRINGS) {
+                dictionary.write(s.getBytes(US_ASCII));
+            }
+            for (String oid : DER_OIDS) {
+                dictionary.write(new ASN1ObjectIdentifier(oid).getEncoded());
+            }
+            return dictionary.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -31,6 +31,8 @@ package net.ripe.rpki.validator3.storage.xodus;
 
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.env.*;
@@ -47,10 +49,14 @@ import net.ripe.rpki.validator3.util.ForkJoin;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -65,6 +71,12 @@ public abstract class Xodus implements Storage {
     private static final String METADATA_MAP_NAME = "meta";
     private Gson gson = new Gson();
     private Store metadata;
+    private StoreSizes storeSizes;
+    private MeterRegistry meterRegistry;
+    @Getter
+    private Checksums checksums = Checksums.DEFAULT;
+    @Getter
+    private boolean compressionEnabled = true;
 
     protected synchronized Store meta() {
         if (metadata == null) {
@@ -76,32 +88,132 @@ public abstract class Xodus implements Storage {
 
     protected abstract Environment getEnv();
 
+    private volatile GroupCommit groupCommit;
+
+    /**
+     * Coalesce the write transactions that different threads submit within <code>window</code> of each other into
+     * a single commit, see {@link GroupCommit}.
+     */
+    protected void enableGroupCommit(Duration window, int maxGroupSize) {
+        log.info("Committing up to {} write transactions submitted within {} together", maxGroupSize, window);
+        groupCommit = new GroupCommit(window, maxGroupSize, new GroupCommit.Executor() {
+            @Override
+            public void executeGroup(List<GroupCommit.Request<?>> group) {
+                executeWriteTxGroup(group);
+            }
+
+            @Override
+            public <T> GroupCommit.Outcome<T> executeSingle(Function<Tx.Write, T> f) {
+                return executeWriteTx(f);
+            }
+        });
+    }
+
     public <T> T writeTx(Function<Tx.Write, T> f) {
+        final GroupCommit gc = groupCommit;
+        final GroupCommit.Outcome<T> outcome = ForkJoin.blocking(() -> gc == null ? executeWriteTx(f) : gc.submit(f));
+
+        for (Runnable r: outcome.afterCommitHooks) {
+            try {
+                r.run();
+            } catch (Exception ignored) {
+                // this is just to keep the loop going, every Runnable
+                // has to take care of exceptions themselves
+            }
+        }
+
+        return outcome.result;
+    }
+
+    private <T> GroupCommit.Outcome<T> executeWriteTx(Function<Tx.Write, T> f) {
         AtomicReference<List<Runnable>> afterCommitHooks = new AtomicReference<>(Collections.emptyList());
 
         Environment env = getEnv();
-        T result = ForkJoin.blocking(() -> env.computeInExclusiveTransaction(txn -> {
+        T result = env.computeInExclusiveTransaction(txn -> {
             XodusTx.Write tx = XodusTx.fromRWNative(env, txn);
             txs.put(tx.getId(), new TxInfo(tx));
             try {
                 T innerResult = f.apply(tx);
+                recordSizeChanges(txn, tx);
                 afterCommitHooks.set(tx.getAfterCommitHooks());
                 return innerResult;
             } finally {
+                tx.close();
                 txs.remove(tx.getId());
             }
-        }));
+        });
+        return new GroupCommit.Outcome<>(result, afterCommitHooks.get());
+    }
 
-        for (Runnable r: afterCommitHooks.get()) {
-            try {
-                r.run();
-            } catch (Exception ignored) {
-                // this is just to keep the loop going, every Runnable
-                // has to take care of exceptions themselves
+    private void executeWriteTxGroup(List<GroupCommit.Request<?>> group) {
+        Environment env = getEnv();
+        env.executeInExclusiveTransaction(txn -> group.forEach(request -> executeInGroup(env, txn, request)));
+    }
+
+    private <T> void executeInGroup(Environment env, Transaction txn, GroupCommit.Request<T> request) {
+        XodusTx.Write tx = XodusTx.fromRWNative(env, txn);
+        txs.put(tx.getId(), new TxInfo(tx));
+        try {
+            T result = request.f.apply(tx);
+            if (txn.isFinished()) {
+                throw new IllegalStateException("Transaction " + tx.getId() + " was aborted");
             }
+            recordSizeChanges(txn, tx);
+            request.complete(result, tx.getAfterCommitHooks());
+        } finally {
+            tx.close();
+            txs.remove(tx.getId());
         }
+    }
 
-        return result;
+    private void recordSizeChanges(Transaction txn, XodusTx.Write tx) {
+        if (txn.isFinished() || tx.getSizeChanges().isEmpty()) {
+            return;
+        }
+        final StoreSizes sizes = storeSizes();
+        final Map<String, StoreSizes.Size> updated = sizes.apply(txn, tx.getSizeChanges());
+        tx.afterCommit(() -> sizes.publish(updated));
+    }
+
+    synchronized StoreSizes storeSizes() {
+        if (storeSizes == null) {
+            storeSizes = new StoreSizes(getEnv(), this::meta, meterRegistry);
+        }
+        return storeSizes;
+    }
+
+    /**
+     * Export the sizes of the stores that are opened after this call as gauges to <code>registry</code>.
+     */
+    protected synchronized void setMeterRegistry(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    /**
+     * Configure the checksums of the maps that are created after this call.
+     */
+    protected void setChecksums(Checksums checksums) {
+        this.checksums = checksums;
+    }
+
+    /**
+     * Disable the compression of the values of the maps that are created after this call, values that were stored
+     * compressed remain readable.
+     */
+    protected void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    synchronized ValueCompression registerCompression(String name, Compression compression) {
+        final ValueCompression valueCompression = new ValueCompression(compression);
+        if (meterRegistry != null) {
+            Gauge.builder("rpkivalidator.storage.compression.ratio", valueCompression, ValueCompression::getRatio)
+                    .description("Size of the values that could be compressed divided by their stored size")
+                    .tag("map", name)
+                    .strongReference(true)
+                    .register(meterRegistry);
+        }
+        return valueCompression;
     }
 
     public void writeTx0(Consumer<Tx.Write> c) {
@@ -119,6 +231,7 @@ public abstract class Xodus implements Storage {
             try {
                 return f.apply(tx);
             } finally {
+                tx.close();
                 txs.remove(tx.getId());
             }
         });
@@ -150,6 +263,13 @@ public abstract class Xodus implements Storage {
         getEnv().gc();
     }
 
+    /**
+     * Stream a consistent backup of the database to <code>out</code> as a gzipped tar archive, while writes continue.
+     */
+    public void backup(OutputStream out) throws IOException {
+        XodusBackup.backup(getEnv(), out);
+    }
+
     @Getter
     private final Map<Long, TxInfo> txs = new ConcurrentHashMap<>();
 
@@ -164,7 +284,15 @@ public abstract class Xodus implements Storage {
     public <T extends Serializable> IxMap<T> createIxMap(final String name,
                                                          final Map<String, Function<T, Set<Key>>> indexFunctions,
                                                          Coder<T> c) {
-        XodusIxMap ixMap = new XodusIxMap(this, name, c, indexFunctions);
+        return createIxMap(name, indexFunctions, c, Compression.none());
+    }
+
+    @Override
+    public <T extends Serializable> IxMap<T> createIxMap(final String name,
+                                                         final Map<String, Function<T, Set<Key>>> indexFunctions,
+                                                         Coder<T> c,
+                                                         Compression compression) {
+        XodusIxMap<T> ixMap = new XodusIxMap<>(this, name, c, indexFunctions, compression);
         ixMaps.put(name, ixMap);
         return ixMap;
     }
@@ -189,9 +317,57 @@ public abstract class Xodus implements Storage {
     }
 
     private void saveDbMeta(IxMapInfo mapInfo) {
+        getEnv().executeInTransaction(tx -> saveDbMeta(tx, mapInfo));
+    }
+
+    private void saveDbMeta(Transaction txn, IxMapInfo mapInfo) {
         final Key key = dbMetaKey(mapInfo.getName());
         final ByteIterable foo = new ArrayByteIterable(gson.toJson(mapInfo).getBytes(UTF_8));
-        getEnv().executeInTransaction(tx -> meta().put(tx, key.toByteIterable(), foo));
+        meta().put(txn, key.toByteIterable(), foo);
+    }
+
+    private Key reindexProgressKey(String name) {
+        return Key.of(name + "-reindex");
+    }
+
+    Optional<ReindexProgress> loadReindexProgress(String name) {
+        return Optional.ofNullable(getEnv().computeInReadonlyTransaction(txn -> {
+            final ByteIterable bi = meta().get(txn, reindexProgressKey(name).toByteIterable());
+            return bi == null ? null : gson.fromJson(new String(Bytes.toBytes(bi), UTF_8), ReindexProgress.class);
+        }));
+    }
+
+    void saveReindexProgress(Transaction txn, String name, ReindexProgress progress) {
+        final ByteIterable bi = new ArrayByteIterable(gson.toJson(progress).getBytes(UTF_8));
+        meta().put(txn, reindexProgressKey(name).toByteIterable(), bi);
+    }
+
+    void removeReindexProgress(Transaction txn, String name) {
+        meta().delete(txn, reindexProgressKey(name).toByteIterable());
+    }
+
+    private final Map<String, ReindexStatus> reindexStatuses = new ConcurrentHashMap<>();
+
+    ReindexStatus reindexStarted(String name, long processed) {
+        final ReindexStatus status = new ReindexStatus(processed);
+        reindexStatuses.put(name, status);
+        return status;
+    }
+
+    public int getPendingReindexCount() {
+        return (int) reindexStatuses.values().stream().filter(s -> s.getCompletedAt() == null).count();
+    }
+
+    public long getReindexedEntryCount() {
+        return reindexStatuses.values().stream().mapToLong(s -> s.getProcessed().get()).sum();
+    }
+
+    @NotNull
+    @Override
+    public Map<String, String> getReindexStatus() {
+        return reindexStatuses.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().toString(), (a, b) -> a, LinkedHashMap::new));
     }
 
     private Key dbMetaKey(String dbName) {
@@ -214,7 +390,6 @@ public abstract class Xodus implements Storage {
         });
 
         final Map<String, Store> indexes = new HashMap<>();
-        boolean reindex = false;
         if (existingIxMapInfo != null) {
             final Set<String> existingIndexes = existingIxMapInfo.getIndexes();
             if (existingIndexes != null) {
@@ -229,8 +404,12 @@ public abstract class Xodus implements Storage {
                         );
                     });
                     existingIxMapInfo.setIndexes(indexFunctions.keySet());
-                    saveDbMeta(existingIxMapInfo);
-                    reindex = true;
+                    // Record that the indexes have to be rebuilt together with the new index set, so that a
+                    // reindex that is interrupted is continued on the next start
+                    getEnv().executeInTransaction(txn -> {
+                        saveDbMeta(txn, existingIxMapInfo);
+                        saveReindexProgress(txn, name, new ReindexProgress());
+                    });
                 }
             } else {
                 existingIxMapInfo.setIndexes(indexFunctions.keySet());
@@ -249,9 +428,25 @@ public abstract class Xodus implements Storage {
             });
         });
 
+        final boolean reindex = loadReindexProgress(name).isPresent();
         return Pair.of(indexes, reindex);
     }
 
+    /**
+     * The store keeping, for every primary key of an indexed map, the keys it was indexed under.
+     */
+    Store createIndexKeysDb(String name, StoreConfig storeConfig) {
+        return getEnv().computeInTransaction(txn ->
+                getEnv().openStore(name + "-index-keys", storeConfig, txn));
+    }
+
+    void removeIndexKeysDb(Transaction txn, String name) {
+        final String storeName = name + "-index-keys";
+        if (getEnv().storeExists(storeName, txn)) {
+            getEnv().removeStore(storeName, txn);
+        }
+    }
+
     private String idxStoreName(String name, String idx) {
         return name + "-idx-" + idx;
     }
@@ -274,6 +469,34 @@ public abstract class Xodus implements Storage {
         });
     }
 
+    private String scrubMap;
+    private Key scrubKey;
+
+    @Override
+    public synchronized ChecksumScrub scrubChecksums(int maxValues) {
+        return readTx(tx -> {
+            final NavigableSet<String> names = new TreeSet<>(ixMaps.keySet());
+            long checked = 0;
+            long corrupted = 0;
+            String name = scrubMap == null ? (names.isEmpty() ? null : names.first()) : names.ceiling(scrubMap);
+            if (!Objects.equals(name, scrubMap)) {
+                scrubKey = null;
+            }
+            while (name != null && checked < maxValues) {
+                final XodusIxBase.Verified verified = ((XodusIxBase<?>) ixMaps.get(name))
+                        .verifyChecksums(tx, scrubKey, (int) (maxValues - checked));
+                checked += verified.getChecked();
+                corrupted += verified.getCorrupted();
+                scrubKey = verified.getNextKey();
+                if (scrubKey == null) {
+                    name = names.higher(name);
+                }
+            }
+            scrubMap = name;
+            return new ChecksumScrub(checked, corrupted, name == null);
+        });
+    }
+
     @NotNull
     @Override
     public Map<String, String> getDbStats() {
@@ -291,6 +514,40 @@ public abstract class Xodus implements Storage {
         private Set<String> indexes;
     }
 
+    /**
+     * Persisted progress of rebuilding the indexes of a map: the indexes are truncated once, after that the values
+     * are indexed in primary key order and <code>lastKey</code> is the last primary key that was indexed.
+     */
+    @Data
+    static class ReindexProgress {
+        private boolean started;
+        private String lastKey;
+        private long processed;
+    }
+
+    @Getter
+    static class ReindexStatus {
+        private final AtomicLong processed;
+        private final Instant startedAt = Instant.now();
+        private volatile Instant completedAt;
+
+        ReindexStatus(long processed) {
+            this.processed = new AtomicLong(processed);
+        }
+
+        void completed() {
+            completedAt = Instant.now();
+        }
+
+        @Override
+        public String toString() {
+            final Instant completed = completedAt;
+            return completed == null
+                    ? String.format("in progress, %d values indexed", processed.get())
+                    : String.format("completed, %d values indexed in %s", processed.get(), Duration.between(startedAt, completed));
+        }
+    }
+
     @Data
     public static class TxInfo {
         private long txId;
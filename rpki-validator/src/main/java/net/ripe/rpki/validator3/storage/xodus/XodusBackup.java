@@ -0,0 +1,154 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import jetbrains.exodus.backup.BackupStrategy;
+import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.util.CompressBackupUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backups of the Xodus environment as a gzipped tar archive, and restoring them into an empty database
+ * directory before the environment is opened.
+ */
+@Slf4j
+class XodusBackup {
+
+    private XodusBackup() {
+    }
+
+    /**
+     * Write a consistent copy of the environment to <code>out</code>. Writes continue while the backup is made:
+     * the backup strategy of the environment only copies the log up to where it was when the backup started and
+     * keeps the garbage collector from deleting files in the mean time.
+     */
+    static void backup(Environment env, OutputStream out) throws IOException {
+        final BackupStrategy strategy = env.getBackupStrategy();
+        try {
+            strategy.beforeBackup();
+            long files = 0;
+            try (TarArchiveOutputStream archive = new TarArchiveOutputStream(new GZIPOutputStream(new BufferedOutputStream(out)))) {
+                archive.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+                for (VirtualFileDescriptor file : strategy.getContents()) {
+                    if (strategy.isInterrupted()) {
+                        throw new IOException("Backup was interrupted");
+                    }
+                    if (file.hasContent()) {
+                        final long size = Math.min(file.getFileSize(), strategy.acceptFile(file));
+                        if (size > 0) {
+                            CompressBackupUtil.archiveFile(archive, file, size);
+                            files++;
+                        }
+                    }
+                }
+            }
+            log.info("Backed up {} files of the database", files);
+        } catch (IOException e) {
+            strategy.onError(e);
+            throw e;
+        } catch (Exception e) {
+            strategy.onError(e);
+            throw new IOException("Could not back up the database", e);
+        } finally {
+            try {
+                strategy.afterBackup();
+            } catch (Exception e) {
+                log.error("Could not finish the backup of the database", e);
+            }
+        }
+    }
+
+    /**
+     * Unpack a backup made by {@link #backup(Environment, OutputStream)} into <code>directory</code>, which must not
+     * contain a database yet.
+     *
+     * The backup is unpacked into a sibling directory first, which only replaces <code>directory</code> once the
+     * whole archive was read. A restore that fails half way (a truncated archive, a full disk) does not leave a
+     * partial database behind that would be opened on the next start.
+     */
+    static void restore(InputStream in, File directory) throws IOException {
+        final String[] existing = directory.list();
+        if (existing != null && existing.length > 0) {
+            throw new IOException("Not restoring the database into " + directory + ", it is not empty");
+        }
+        final Path target = directory.toPath().toAbsolutePath().normalize();
+        final Path unpacked = target.resolveSibling(target.getFileName() + ".restoring");
+        // Left behind by a restore that was killed
+        FileSystemUtils.deleteRecursively(unpacked);
+        try {
+            Files.createDirectories(unpacked);
+            final long files = unpack(in, unpacked);
+            Files.deleteIfExists(target);
+            Files.move(unpacked, target, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Restored {} files of the database into {}", files, directory);
+        } catch (IOException | RuntimeException e) {
+            FileSystemUtils.deleteRecursively(unpacked);
+            throw e;
+        }
+    }
+
+    private static long unpack(InputStream in, Path root) throws IOException {
+        long files = 0;
+        try (TarArchiveInputStream archive = new TarArchiveInputStream(new GZIPInputStream(new BufferedInputStream(in)))) {
+            TarArchiveEntry entry;
+            while ((entry = archive.getNextTarEntry()) != null) {
+                final Path target = root.resolve(entry.getName()).normalize();
+                if (!target.startsWith(root)) {
+                    throw new IOException("Backup contains a file outside of the database directory: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(archive, target, StandardCopyOption.REPLACE_EXISTING);
+                    files++;
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -29,8 +29,12 @@
  */
 package net.ripe.rpki.validator3.storage.xodus;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.EnvironmentConfig;
+import jetbrains.exodus.env.EnvironmentStatistics;
 import jetbrains.exodus.env.Environments;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.storage.XodusInitialisationException;
@@ -42,6 +46,11 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 @Profile("!test")
 @Component
@@ -50,17 +59,46 @@ import java.io.File;
 public class XodusImpl extends Xodus {
 
     private final String path;
+    private final Duration groupCommitWindow;
+    private final int groupCommitMaxTransactions;
+    private final String restoreArchive;
+
+    private final MeterRegistry registry;
 
     private Environment env;
 
-    public XodusImpl(@Value("${rpki.validator.data.path}") String path) {
+    public XodusImpl(@Value("${rpki.validator.data.path}") String path,
+                     @Value("${rpki.validator.storage.group-commit.window:PT0S}") Duration groupCommitWindow,
+                     @Value("${rpki.validator.storage.group-commit.max-transactions:64}") int groupCommitMaxTransactions,
+                     @Value("${rpki.validator.storage.checksum.algorithm:CRC32C}") Checksums.Algorithm checksumAlgorithm,
+                     @Value("${rpki.validator.storage.checksum.verify-fraction:1.0}") double checksumVerifyFraction,
+                     @Value("${rpki.validator.storage.compression.enabled:true}") boolean compressionEnabled,
+                     @Value("${rpki.validator.storage.restore.archive:}") String restoreArchive,
+                     MeterRegistry registry) {
         this.path = path;
+        this.groupCommitWindow = groupCommitWindow;
+        this.groupCommitMaxTransactions = groupCommitMaxTransactions;
+        this.restoreArchive = restoreArchive;
+        this.registry = registry;
+        setMeterRegistry(registry);
+        setChecksums(new Checksums(checksumAlgorithm, checksumVerifyFraction));
+        setCompressionEnabled(compressionEnabled);
+
+        Gauge.builder("rpkivalidator.storage.reindex.pending", this, Xodus::getPendingReindexCount)
+            .description("Number of maps whose indexes are being rebuilt")
+            .register(registry);
+        FunctionCounter.builder("rpkivalidator.storage.reindex.values", this, Xodus::getReindexedEntryCount)
+            .description("Number of values indexed while rebuilding indexes")
+            .register(registry);
     }
 
     @PostConstruct
     public void initXodus() {
         try {
             final String dbPath = createDirectoryIfNeeded();
+            if (!restoreArchive.isEmpty()) {
+                restoreIfEmpty(new File(dbPath));
+            }
             log.info("Creating Xodus environment at {}", dbPath);
 
             final EnvironmentConfig config = new EnvironmentConfig()
@@ -81,6 +119,10 @@ public class XodusImpl extends Xodus {
                 .setEnvCloseForcedly(true);
 
             env = Environments.newInstance(dbPath, config);
+            registerEnvironmentStatistics((EnvironmentStatistics) env.getStatistics());
+            if (!groupCommitWindow.isZero() && groupCommitMaxTransactions > 1) {
+                enableGroupCommit(groupCommitWindow, groupCommitMaxTransactions);
+            }
 
             Runtime.getRuntime().addShutdownHook(new Thread(this::waitForAllTxToFinishAndClose));
         } catch (Exception e) {
@@ -89,6 +131,32 @@ public class XodusImpl extends Xodus {
         }
     }
 
+    private void registerEnvironmentStatistics(EnvironmentStatistics statistics) {
+        for (EnvironmentStatistics.Type type : EnvironmentStatistics.Type.values()) {
+            Gauge.builder("rpkivalidator.storage.environment", statistics, s -> s.getStatisticsItem(type).getTotal())
+                .description("Xodus environment statistics")
+                .tag("type", type.name())
+                .register(registry);
+        }
+    }
+
+    /**
+     * Start from a backup instead of an empty database. All repositories are pending on start up until they are
+     * downloaded again, which only needs the changes since the backup was made for RRDP repositories. A restore
+     * that fails stops the start up and leaves the database directory empty, so that it is tried again next time.
+     */
+    private void restoreIfEmpty(File dbDir) throws IOException {
+        final String[] existing = dbDir.list();
+        if (existing != null && existing.length > 0) {
+            log.warn("Not restoring the backup {}, the database at {} already exists", restoreArchive, dbDir);
+            return;
+        }
+        log.info("Restoring the backup {} into {}", restoreArchive, dbDir);
+        try (InputStream in = Files.newInputStream(Paths.get(restoreArchive))) {
+            XodusBackup.restore(in, dbDir);
+        }
+    }
+
     private String createDirectoryIfNeeded() {
         final File mainDir = new File(path);
         if (!mainDir.exists() || !mainDir.isDirectory()) {
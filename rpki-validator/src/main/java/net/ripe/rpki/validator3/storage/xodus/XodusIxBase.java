@@ -29,6 +29,7 @@
  */
 package net.ripe.rpki.validator3.storage.xodus;
 
+import com.google.common.primitives.Longs;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.env.Cursor;
@@ -38,7 +39,10 @@ import jetbrains.exodus.env.StoreConfig;
 import jetbrains.exodus.env.Transaction;
 import jetbrains.exodus.management.Statistics;
 import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.storage.Bytes;
+import net.ripe.rpki.validator3.storage.Compression;
 import net.ripe.rpki.validator3.storage.IxBase;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
@@ -52,11 +56,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
-import java.util.zip.CRC32;
+import java.util.stream.Stream;
 
+@Slf4j
 public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
 
     protected final Environment env;
@@ -65,28 +69,31 @@ public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
 
     private final Store mainDb;
     final Coder<T> coder;
+    final StoreSizes storeSizes;
+    private final Checksums checksums;
+    private final ValueCompression compression;
 
     XodusIxBase(final Xodus xodus,
                 final String name,
                 final Coder<T> coder) {
-        this.env = xodus.getEnv();
-        this.name = name;
-        this.coder = coder;
-        synchronized (xodus) {
-            this.mainDb = xodus.createMainMapDb(name, getStoreConfig());
-        }
+        this(xodus, name, coder, null, Compression.none());
     }
 
     XodusIxBase(final Xodus xodus,
                 final String name,
                 final Coder<T> coder,
-                StoreConfig storeConfig) {
+                StoreConfig storeConfig,
+                Compression compression) {
         this.env = xodus.getEnv();
         this.name = name;
         this.coder = coder;
+        this.checksums = xodus.getChecksums();
+        this.compression = compression.isEnabled() && xodus.isCompressionEnabled() ? xodus.registerCompression(name, compression) : null;
         synchronized (xodus) {
-            this.mainDb = xodus.createMainMapDb(name, storeConfig);
+            this.mainDb = xodus.createMainMapDb(name, storeConfig == null ? getStoreConfig() : storeConfig);
         }
+        this.storeSizes = xodus.storeSizes();
+        storeSizes.init(mainDb);
     }
 
     protected abstract StoreConfig getStoreConfig();
@@ -127,28 +134,104 @@ public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
         Xodus.checkEnv(env);
     }
 
+    /**
+     * @return the checksum algorithm for values that are written.
+     */
+    protected Checksums.Algorithm checksumAlgorithm() {
+        return checksums.getAlgorithm();
+    }
+
+    /**
+     * The value is encoded after room for the checksum, so that the stored bytes are allocated only once (unless
+     * the value is compressed).
+     */
     protected ByteIterable valueWithChecksum(T value) {
-        final byte[] valueBytes = coder.toBytes(value);
-        CRC32 checksum = new CRC32();
-        checksum.update(valueBytes);
-        byte[] stored = new byte[Long.BYTES + valueBytes.length];
-        ByteBuffer byteBuffer = ByteBuffer.wrap(stored);
-        byteBuffer.putLong(checksum.getValue());
-        byteBuffer.put(valueBytes);
-        byteBuffer.flip();
+        byte[] stored = coder.toBytes(value, Long.BYTES);
+        long flags = 0;
+        if (compression != null) {
+            final byte[] compressed = compression.compress(stored, Long.BYTES, stored.length - Long.BYTES, Long.BYTES);
+            if (compressed != null) {
+                stored = compressed;
+                flags = Checksums.COMPRESSED;
+            }
+        }
+        final long checksum = Checksums.checksum(checksumAlgorithm(), stored, Long.BYTES, stored.length - Long.BYTES);
+        ByteBuffer.wrap(stored).putLong(0, checksum | flags);
         return new ArrayByteIterable(stored);
     }
 
     protected T getValue(Key k, byte[] b) {
-        ByteBuffer bb = ByteBuffer.wrap(b);
-        long crc32 = bb.getLong();
-        final byte[] valueBytes = Bytes.toBytes(bb);
-        CRC32 checksum = new CRC32();
-        checksum.update(valueBytes);
-        if (checksum.getValue() != crc32) {
+        return getValue(k, b, b.length);
+    }
+
+    /**
+     * Verify and decode the stored value directly from the bytes provided by Xodus, without copying them first.
+     */
+    protected T getValue(Key k, ByteIterable bi) {
+        return getValue(k, bi.getBytesUnsafe(), bi.getLength());
+    }
+
+    private T getValue(Key k, byte[] b, int length) {
+        final long header = header(b);
+        if (checksums.verifyRead() && !Checksums.matches(header, b, Long.BYTES, length - Long.BYTES)) {
             throw new RuntimeException("Data for the key " + k + " is corrupted");
         }
-        return coder.fromBytes(valueBytes);
+        if (Checksums.isCompressed(header)) {
+            final byte[] decompressed;
+            try {
+                decompressed = ValueCompression.decompress(b, Long.BYTES, length - Long.BYTES);
+            } catch (IllegalStateException e) {
+                // The checksum is not verified for every read, so a corrupted value may only show up here
+                throw new RuntimeException("Data for the key " + k + " is corrupted", e);
+            }
+            return coder.fromBytes(decompressed);
+        }
+        return coder.fromBytes(b, Long.BYTES, length - Long.BYTES);
+    }
+
+    private static long header(byte[] b) {
+        return Longs.fromBytes(b[0], b[1], b[2], b[3], b[4], b[5], b[6], b[7]);
+    }
+
+    private static boolean checksumMatches(byte[] b, int length) {
+        return Checksums.matches(header(b), b, Long.BYTES, length - Long.BYTES);
+    }
+
+    /**
+     * Verify the checksums of the stored values in key order, starting at <code>fromKey</code> (or the first key if
+     * it is null). All values of a key are verified together, so more than <code>limit</code> values may be verified.
+     */
+    Verified verifyChecksums(Tx.Read tx, Key fromKey, int limit) {
+        int checked = 0;
+        int corrupted = 0;
+        try (Cursor c = getMainDb().openCursor(castTxn(tx))) {
+            boolean hasNext = fromKey == null ? c.getNext() : c.getSearchKeyRange(fromKey.toByteIterable()) != null;
+            ByteIterable lastKey = null;
+            while (hasNext) {
+                final ByteIterable key = c.getKey();
+                final boolean sameKey = key.equals(lastKey);
+                if (checked >= limit && !sameKey) {
+                    return new Verified(checked, corrupted, new Key(key));
+                }
+                final ByteIterable value = c.getValue();
+                if (value.getLength() < Long.BYTES || !checksumMatches(value.getBytesUnsafe(), value.getLength())) {
+                    log.error("Data for the key {} in {} is corrupted", new Key(key), getName());
+                    corrupted++;
+                }
+                checked++;
+                lastKey = sameKey ? lastKey : new ArrayByteIterable(Bytes.toBytes(key));
+                hasNext = c.getNext();
+            }
+        }
+        return new Verified(checked, corrupted, null);
+    }
+
+    @Value
+    static class Verified {
+        int checked;
+        int corrupted;
+        /** The key to continue verifying from, or null if the last value was verified. */
+        Key nextKey;
     }
 
     public Set<Key> keys(Tx.Read tx) {
@@ -169,6 +252,16 @@ public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
         return result;
     }
 
+    @Override
+    public Stream<Key> streamKeys(Tx.Read tx) {
+        return CursorSpliterator.stream(tx, getMainDb(), c -> new Key(c.getKey()));
+    }
+
+    @Override
+    public Stream<T> streamValues(Tx.Read tx) {
+        return CursorSpliterator.stream(tx, getMainDb(), c -> getValue(new Key(c.getKey()), c.getValue()));
+    }
+
     @Override
     public void clear(Tx.Write tx) {
         // TODO Probably reimplement it using something like
@@ -177,15 +270,32 @@ public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
     }
 
     protected static void truncate(Tx.Write tx, Store mainDb) {
-        try (Cursor c = mainDb.openCursor(castTxn(tx))) {
+        deleteAll(tx, mainDb);
+        ((XodusTx.Write) tx).truncated(mainDb);
+    }
+
+    static void deleteAll(Tx.Write tx, Store store) {
+        try (Cursor c = store.openCursor(castTxn(tx))) {
             while (c.getNext()) {
                 c.deleteCurrent();
             }
         }
     }
 
+    /**
+     * Record that <code>count</code> entries with <code>bytes</code> bytes of keys and values were added to (or
+     * removed from, when negative) <code>store</code> by the transaction.
+     */
+    static void sizeChanged(Tx.Write tx, Store store, long count, long bytes) {
+        ((XodusTx.Write) tx).sizeChanged(store, count, bytes);
+    }
+
+    static Sizes sizes(StoreSizes.Size size) {
+        return new Sizes(Math.toIntExact(size.getCount()), size.getBytes());
+    }
+
     public T toValue(ByteIterable bi) {
-        return getValue(null, Bytes.toBytes(bi));
+        return getValue(null, bi);
     }
 
     @Override
@@ -207,15 +317,13 @@ public abstract class XodusIxBase<T extends Serializable> implements IxBase<T> {
         return (Transaction) tx.txn();
     }
 
+    /**
+     * @return the size as of the last committed transaction, which is kept up to date by the transactions themselves
+     * so the store is not scanned.
+     */
     @Override
     public Sizes sizeInfo(Tx.Read tx) {
-        AtomicInteger count = new AtomicInteger();
-        AtomicInteger size = new AtomicInteger();
-        forEach(tx, (k, v) -> {
-            count.getAndIncrement();
-            size.addAndGet(k.size() + v.length);
-        });
-        return new Sizes(count.get(), size.get());
+        return sizes(storeSizes.get(getMainDb().getName()));
     }
 
 }
@@ -29,67 +29,199 @@
  */
 package net.ripe.rpki.validator3.storage.xodus;
 
+import com.google.common.primitives.UnsignedBytes;
+import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.StoreConfig;
 import jetbrains.exodus.env.Transaction;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.storage.Bytes;
+import net.ripe.rpki.validator3.storage.Compression;
 import net.ripe.rpki.validator3.storage.IxMap;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.encoding.Coder;
 import net.ripe.rpki.validator3.storage.OnDeleteRestrictException;
+import net.ripe.rpki.validator3.util.Hex;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  *
  * @param <T>
  */
+@Slf4j
 public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implements IxMap<T> {
 
     private final Map<String, Store> indexes;
     private final Map<String, Function<T, Set<Key>>> indexFunctions;
+    /**
+     * The index keys of every value, stored next to the values so that updates and deletes do not have to decode
+     * the previous value and apply the index functions to it again.
+     */
+    private Store indexKeysDb;
     private final List<BiConsumer<Tx.Write, Key>> onDeleteTriggers = new ArrayList<>();
 
+    static final int REINDEX_CHUNK_SIZE = 10_000;
+
+    /**
+     * The order of keys in the stores, used to write batches sequentially.
+     */
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::getBytes, UnsignedBytes.lexicographicalComparator());
+    private static final Comparator<Pair<Key, Key>> INDEX_ENTRY_ORDER = Comparator
+            .comparing((Pair<Key, Key> e) -> e.getLeft(), KEY_ORDER)
+            .thenComparing(Pair::getRight, KEY_ORDER);
+
     public XodusIxMap(final Xodus xodus,
                       final String name,
                       final Coder<T> coder,
                       final Map<String, Function<T, Set<Key>>> indexFunctions) {
-        super(xodus, name, coder);
+        this(xodus, name, coder, indexFunctions, Compression.none());
+    }
+
+    public XodusIxMap(final Xodus xodus,
+                      final String name,
+                      final Coder<T> coder,
+                      final Map<String, Function<T, Set<Key>>> indexFunctions,
+                      final Compression compression) {
+        super(xodus, name, coder, null, compression);
         this.indexFunctions = indexFunctions;
         Pair<Map<String, Store>, Boolean> p = xodus.createIndexes(name, indexFunctions, StoreConfig.WITH_DUPLICATES_WITH_PREFIXING);
         indexes = p.getLeft();
+        indexKeysDb = indexFunctions.isEmpty() ? null : xodus.createIndexKeysDb(name, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING);
         boolean reindex = p.getRight();
         if (reindex) {
-            reindex();
+            reindex(xodus);
+        }
+        indexes.values().forEach(storeSizes::init);
+        if (indexKeysDb != null) {
+            storeSizes.init(indexKeysDb);
         }
     }
 
-    private void reindex() {
-        this.env.executeInExclusiveTransaction(txn -> {
-            indexes.forEach((name, idx) -> env.truncateStore(idx.getName(), txn));
-            try (final Cursor ci = getMainDb().openCursor(txn)) {
-                while (ci.getNext()) {
-                    ByteIterable pk = ci.getKey();
-                    final T value = getValue(new Key(pk), Bytes.toBytes(ci.getValue()));
-                    indexFunctions.forEach((n, idxFun) -> {
-                        final Store idx = getIdx(n);
-                        idxFun.apply(value).forEach(ik -> idx.put(txn, ik.toByteIterable(), pk));
+    /**
+     * Rebuild the indexes in chunks that are committed separately, so that a large map does not need a single huge
+     * transaction, and an interrupted reindex continues after the last committed chunk on the next start. The values
+     * of a chunk are decoded and their index keys computed in parallel.
+     */
+    private void reindex(Xodus xodus) {
+        if (indexKeysDb == null) {
+            // All indexes were dropped, so there is nothing to rebuild, only the index keys of the old ones to remove
+            log.info("Removing the index keys of {}, it has no indexes anymore", getName());
+            env.executeInExclusiveTransaction(txn -> {
+                xodus.removeIndexKeysDb(txn, getName());
+                xodus.removeReindexProgress(txn, getName());
+            });
+            return;
+        }
+        final Xodus.ReindexProgress progress = xodus.loadReindexProgress(getName()).orElseGet(Xodus.ReindexProgress::new);
+        if (progress.isStarted()) {
+            log.info("Continuing to reindex {} after {} values", getName(), progress.getProcessed());
+        } else {
+            log.info("Reindexing {}", getName());
+            progress.setStarted(true);
+            final Map<String, StoreSizes.Change> sizeChanges = new HashMap<>();
+            final Map<String, StoreSizes.Size> sizes = this.env.computeInExclusiveTransaction(txn -> {
+                indexes.replaceAll((name, idx) -> {
+                    sizeChanges.computeIfAbsent(idx.getName(), n -> new StoreSizes.Change()).truncated();
+                    return truncateStore(txn, idx);
+                });
+                indexKeysDb = truncateStore(txn, indexKeysDb);
+                sizeChanges.computeIfAbsent(indexKeysDb.getName(), n -> new StoreSizes.Change()).truncated();
+                xodus.saveReindexProgress(txn, getName(), progress);
+                return storeSizes.apply(txn, sizeChanges);
+            });
+            storeSizes.publish(sizes);
+        }
+
+        final Xodus.ReindexStatus status = xodus.reindexStarted(getName(), progress.getProcessed());
+        boolean done = false;
+        while (!done) {
+            final Key lastKey = progress.getLastKey() == null ? null : Key.of(Hex.parse(progress.getLastKey()));
+            final List<Pair<Key, byte[]>> chunk = env.computeInReadonlyTransaction(txn -> readReindexChunk(txn, lastKey));
+            final List<Pair<Key, Map<String, Set<Key>>>> chunkIndexKeys = chunk.parallelStream()
+                    .map(e -> Pair.of(e.getLeft(), indexKeys(getValue(e.getLeft(), e.getRight()))))
+                    .collect(Collectors.toList());
+
+            done = chunk.size() < REINDEX_CHUNK_SIZE;
+            if (!chunk.isEmpty()) {
+                progress.setLastKey(Hex.format(chunk.get(chunk.size() - 1).getLeft().getBytes()));
+                progress.setProcessed(progress.getProcessed() + chunk.size());
+            }
+            final boolean completed = done;
+            final Map<String, StoreSizes.Size> sizes = this.env.computeInExclusiveTransaction(txn -> {
+                final Map<String, StoreSizes.Change> sizeChanges = new HashMap<>();
+                final Map<String, SortedSet<Pair<Key, Key>>> indexPuts = new HashMap<>();
+                final StoreSizes.Change indexKeysChange = sizeChanges.computeIfAbsent(indexKeysDb.getName(), n -> new StoreSizes.Change());
+                chunkIndexKeys.forEach(e -> {
+                    e.getRight().forEach((idxName, keys) -> keys.forEach(ik ->
+                            indexPuts.computeIfAbsent(idxName, n -> new TreeSet<>(INDEX_ENTRY_ORDER)).add(Pair.of(ik, e.getLeft()))));
+                    final ByteIterable indexKeys = IndexKeys.toByteIterable(e.getRight());
+                    indexKeysDb.put(txn, e.getLeft().toByteIterable(), indexKeys);
+                    indexKeysChange.add(1, e.getLeft().size() + indexKeys.getLength());
+                });
+                indexPuts.forEach((idxName, entries) -> {
+                    final Store index = getIdx(idxName);
+                    final StoreSizes.Change change = sizeChanges.computeIfAbsent(index.getName(), n -> new StoreSizes.Change());
+                    entries.forEach(e -> {
+                        if (index.put(txn, e.getLeft().toByteIterable(), e.getRight().toByteIterable())) {
+                            change.add(1, e.getLeft().size() + e.getRight().size());
+                        }
                     });
+                });
+                if (completed) {
+                    xodus.removeReindexProgress(txn, getName());
+                } else {
+                    xodus.saveReindexProgress(txn, getName(), progress);
+                }
+                return storeSizes.apply(txn, sizeChanges);
+            });
+            storeSizes.publish(sizes);
+            status.getProcessed().addAndGet(chunk.size());
+        }
+        status.completed();
+        log.info("Reindexed {}: {}", getName(), status);
+    }
+
+    /**
+     * Truncating replaces the store by a new one, so the store has to be opened again: the old handle still points
+     * to the removed one.
+     */
+    private Store truncateStore(Transaction txn, Store store) {
+        env.truncateStore(store.getName(), txn);
+        return env.openStore(store.getName(), StoreConfig.USE_EXISTING, txn);
+    }
+
+    private List<Pair<Key, byte[]>> readReindexChunk(Transaction txn, Key lastKey) {
+        final List<Pair<Key, byte[]>> chunk = new ArrayList<>(REINDEX_CHUNK_SIZE);
+        try (final Cursor ci = getMainDb().openCursor(txn)) {
+            boolean hasNext;
+            if (lastKey == null) {
+                hasNext = ci.getNext();
+            } else {
+                hasNext = ci.getSearchKeyRange(lastKey.toByteIterable()) != null;
+                if (hasNext && lastKey.equals(new Key(ci.getKey()))) {
+                    hasNext = ci.getNext();
                 }
             }
-        });
+            while (hasNext && chunk.size() < REINDEX_CHUNK_SIZE) {
+                chunk.add(Pair.of(new Key(ci.getKey()), Bytes.toBytes(ci.getValue())));
+                hasNext = chunk.size() < REINDEX_CHUNK_SIZE && ci.getNext();
+            }
+        }
+        return chunk;
     }
 
     private Store getIdx(String name) {
@@ -99,6 +231,73 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
 
     private void dropIndexes(Tx.Write tx) {
         indexes.forEach((name, db) -> truncate(tx, db));
+        if (indexKeysDb != null) {
+            truncate(tx, indexKeysDb);
+        }
+    }
+
+    private Map<String, Set<Key>> indexKeys(T value) {
+        final Map<String, Set<Key>> indexKeys = new HashMap<>();
+        indexFunctions.forEach((idxName, idxFun) -> indexKeys.put(idxName, idxFun.apply(value).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet())));
+        return indexKeys;
+    }
+
+    /**
+     * Values stored before the index keys were kept next to them are decoded to compute their index keys.
+     */
+    private Map<String, Set<Key>> storedIndexKeys(Transaction txn, Key primaryKey, ByteIterable pkBuf, ByteIterable storedValue) {
+        final ByteIterable stored = indexKeysDb.get(txn, pkBuf);
+        if (stored != null) {
+            return IndexKeys.fromBytes(Bytes.toBytes(stored));
+        }
+        return indexKeys(getValue(primaryKey, storedValue));
+    }
+
+    private void deleteFromIndex(Tx.Write tx, Store index, Key indexKey, ByteIterable pkBuf) {
+        try (Cursor c = index.openCursor(castTxn(tx))) {
+            if (c.getSearchBoth(indexKey.toByteIterable(), pkBuf)) {
+                c.deleteCurrent();
+                sizeChanged(tx, index, -1, -(indexKey.size() + pkBuf.getLength()));
+            }
+        }
+    }
+
+    private void putToIndex(Tx.Write tx, Store index, Key indexKey, ByteIterable pkBuf) {
+        if (index.put(castTxn(tx), indexKey.toByteIterable(), pkBuf)) {
+            sizeChanged(tx, index, 1, indexKey.size() + pkBuf.getLength());
+        }
+    }
+
+    private void putIndexKeys(Tx.Write tx, ByteIterable pkBuf, Map<String, Set<Key>> indexKeys) {
+        final Transaction txn = castTxn(tx);
+        final ByteIterable newVal = IndexKeys.toByteIterable(indexKeys);
+        final ByteIterable oldVal = indexKeysDb.get(txn, pkBuf);
+        if (oldVal == null) {
+            sizeChanged(tx, indexKeysDb, 1, pkBuf.getLength() + newVal.getLength());
+        } else {
+            sizeChanged(tx, indexKeysDb, 0, newVal.getLength() - oldVal.getLength());
+        }
+        indexKeysDb.put(txn, pkBuf, newVal);
+    }
+
+    private void deleteIndexKeys(Tx.Write tx, ByteIterable pkBuf) {
+        final Transaction txn = castTxn(tx);
+        final ByteIterable oldVal = indexKeysDb.get(txn, pkBuf);
+        if (oldVal != null) {
+            sizeChanged(tx, indexKeysDb, -1, -(pkBuf.getLength() + oldVal.getLength()));
+            indexKeysDb.delete(txn, pkBuf);
+        }
+    }
+
+    private void putToMain(Tx.Write tx, ByteIterable pkBuf, ByteIterable newVal, ByteIterable oldVal) {
+        if (oldVal == null) {
+            sizeChanged(tx, getMainDb(), 1, pkBuf.getLength() + newVal.getLength());
+        } else {
+            sizeChanged(tx, getMainDb(), 0, newVal.getLength() - oldVal.getLength());
+        }
+        getMainDb().put(castTxn(tx), pkBuf, newVal);
     }
 
     protected StoreConfig getStoreConfig() {
@@ -115,7 +314,7 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         if (bi == null) {
             return Optional.empty();
         }
-        return Optional.of(getValue(primaryKey, Bytes.toBytes(bi)));
+        return Optional.of(getValue(primaryKey, bi));
     }
 
     public List<T> get(Tx.Read txn, Set<Key> primaryKeys) {
@@ -126,7 +325,7 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
                 .collect(Collectors.toList());
     }
 
-    public Optional<T> put(Tx.Write tx, Key primaryKey, T value) {
+    public void put(Tx.Write tx, Key primaryKey, T value) {
         checkKeyAndValue(primaryKey, value);
         final Transaction txn = castTxn(tx);
         final ByteIterable pkBuf = primaryKey.toByteIterable();
@@ -136,43 +335,100 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         if (newVal.equals(oldVal)) {
             // Exact same value already exists in the database, no need to store it again
             // or to update indexes.
-            return Optional.of(value);
+            return;
         }
 
-        getMainDb().put(txn, pkBuf, newVal);
-        if (oldVal != null) {
-            final T oldValue = getValue(primaryKey, Bytes.toBytes(oldVal));
-            indexFunctions.forEach((idxName, idxFun) -> {
-                final Set<Key> oldIndexKeys = idxFun.apply(oldValue);
-                final Set<Key> indexKeys = idxFun.apply(value).stream()
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toSet());
-                final Store index = getIdx(idxName);
-                oldIndexKeys.stream()
-                        .filter(oik -> !indexKeys.contains(oik))
-                        .forEach(oik -> {
-                            try (Cursor c = index.openCursor(txn)) {
-                                if (c.getSearchBoth(oik.toByteIterable(), pkBuf)) {
-                                    c.deleteCurrent();
-                                }
-                            }
-                        });
+        putToMain(tx, pkBuf, newVal, oldVal);
+        if (indexFunctions.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Set<Key>> indexKeys = indexKeys(value);
+        final Map<String, Set<Key>> oldIndexKeys = oldVal == null ?
+                Collections.emptyMap() :
+                storedIndexKeys(txn, primaryKey, pkBuf, oldVal);
+        indexKeys.forEach((idxName, keys) -> {
+            final Set<Key> oldKeys = oldIndexKeys.getOrDefault(idxName, Collections.emptySet());
+            final Store index = getIdx(idxName);
+            oldKeys.stream()
+                    .filter(oik -> !keys.contains(oik))
+                    .forEach(oik -> deleteFromIndex(tx, index, oik, pkBuf));
+            keys.stream()
+                    .filter(ik -> !oldKeys.contains(ik))
+                    .forEach(ik -> putToIndex(tx, index, ik, pkBuf));
+        });
+        putIndexKeys(tx, pkBuf, indexKeys);
+    }
+
+    @Override
+    public int putAll(Tx.Write tx, Map<Key, T> values) {
+        final Transaction txn = castTxn(tx);
+        final Store mainDb = getMainDb();
 
-                indexKeys.stream()
-                        .filter(ik -> !oldIndexKeys.contains(ik))
-                        .forEach(ik -> index.put(txn, ik.toByteIterable(), pkBuf));
+        final List<Map.Entry<Key, T>> sorted = new ArrayList<>(values.entrySet());
+        sorted.forEach(e -> checkKeyAndValue(e.getKey(), e.getValue()));
+        sorted.sort(Map.Entry.comparingByKey(KEY_ORDER));
+
+        // Find the values that actually change in a single pass over the main store
+        final List<Triple<Key, T, ByteIterable>> changed = new ArrayList<>();
+        final Map<Key, ByteIterable> oldValues = new HashMap<>();
+        try (Cursor cursor = mainDb.openCursor(txn)) {
+            sorted.forEach(e -> {
+                final ByteIterable newVal = valueWithChecksum(e.getValue());
+                final ByteIterable oldVal = cursor.getSearchKey(e.getKey().toByteIterable());
+                if (!newVal.equals(oldVal)) {
+                    changed.add(Triple.of(e.getKey(), e.getValue(), newVal));
+                    if (oldVal != null) {
+                        oldValues.put(e.getKey(), new ArrayByteIterable(Bytes.toBytes(oldVal)));
+                    }
+                }
             });
-            return Optional.of(oldValue);
         }
-        indexFunctions.forEach((idxName, idxFun) -> {
-            final Set<Key> indexKeys = idxFun.apply(value).stream()
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet());
 
-            indexKeys.forEach(ik -> getIdx(idxName).put(txn, ik.toByteIterable(), pkBuf));
-        });
+        final Map<String, SortedSet<Pair<Key, Key>>> indexDeletes = new HashMap<>();
+        final Map<String, SortedSet<Pair<Key, Key>>> indexPuts = new HashMap<>();
+        for (Triple<Key, T, ByteIterable> change : changed) {
+            final Key primaryKey = change.getLeft();
+            final ByteIterable pkBuf = primaryKey.toByteIterable();
+            final ByteIterable oldVal = oldValues.get(primaryKey);
+            putToMain(tx, pkBuf, change.getRight(), oldVal);
+            if (indexFunctions.isEmpty()) {
+                continue;
+            }
 
-        return Optional.empty();
+            final Map<String, Set<Key>> indexKeys = indexKeys(change.getMiddle());
+            final Map<String, Set<Key>> oldIndexKeys = oldVal == null ?
+                    Collections.emptyMap() :
+                    storedIndexKeys(txn, primaryKey, pkBuf, oldVal);
+            indexKeys.forEach((idxName, keys) -> {
+                final Set<Key> oldKeys = oldIndexKeys.getOrDefault(idxName, Collections.emptySet());
+                oldKeys.stream()
+                        .filter(oik -> !keys.contains(oik))
+                        .forEach(oik -> indexDeletes.computeIfAbsent(idxName, n -> new TreeSet<>(INDEX_ENTRY_ORDER)).add(Pair.of(oik, primaryKey)));
+                keys.stream()
+                        .filter(ik -> !oldKeys.contains(ik))
+                        .forEach(ik -> indexPuts.computeIfAbsent(idxName, n -> new TreeSet<>(INDEX_ENTRY_ORDER)).add(Pair.of(ik, primaryKey)));
+            });
+            putIndexKeys(tx, pkBuf, indexKeys);
+        }
+
+        // Update every index in one sorted batch, instead of jumping between indexes for every value
+        indexDeletes.forEach((idxName, entries) -> {
+            final Store index = getIdx(idxName);
+            try (Cursor c = index.openCursor(txn)) {
+                entries.forEach(e -> {
+                    if (c.getSearchBoth(e.getLeft().toByteIterable(), e.getRight().toByteIterable())) {
+                        c.deleteCurrent();
+                        sizeChanged(tx, index, -1, -(e.getLeft().size() + e.getRight().size()));
+                    }
+                });
+            }
+        });
+        indexPuts.forEach((idxName, entries) -> {
+            final Store index = getIdx(idxName);
+            entries.forEach(e -> putToIndex(tx, index, e.getLeft(), e.getRight().toByteIterable()));
+        });
+        return changed.size();
     }
 
     public boolean modify(Tx.Write tx, Key primaryKey, Consumer<T> modifyValue) {
@@ -190,23 +446,21 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         final Store mainDb = getMainDb();
         final ByteIterable pkBuf = primaryKey.toByteIterable();
 
-        if (indexFunctions.isEmpty()) {
-            mainDb.delete(txn, pkBuf);
-        } else {
-            final ByteIterable bb = mainDb.get(txn, pkBuf);
-            if (bb != null) {
-                // TODO probably avoid deserialization, just store the
-                //  index keys next to the serialized value
-                final T value = getValue(primaryKey, Bytes.toBytes(bb));
+        final ByteIterable bb = mainDb.get(txn, pkBuf);
+        if (bb != null) {
+            sizeChanged(tx, mainDb, -1, -(pkBuf.getLength() + bb.getLength()));
+            if (indexFunctions.isEmpty()) {
                 mainDb.delete(txn, pkBuf);
-                indexFunctions.forEach((idxName, idxFun) ->
-                        idxFun.apply(value).forEach(ix -> {
-                            try (Cursor c = getIdx(idxName).openCursor(txn)) {
-                                if (c.getSearchBoth(ix.toByteIterable(), pkBuf)) {
-                                    c.deleteCurrent();
-                                }
-                            }
-                        }));
+            } else {
+                final Map<String, Set<Key>> indexKeys = storedIndexKeys(txn, primaryKey, pkBuf, bb);
+                mainDb.delete(txn, pkBuf);
+                deleteIndexKeys(tx, pkBuf);
+                indexKeys.forEach((idxName, keys) -> {
+                    final Store index = getIdx(idxName);
+                    if (index != null) {
+                        keys.forEach(ix -> deleteFromIndex(tx, index, ix, pkBuf));
+                    }
+                });
             }
         }
         try {
@@ -233,6 +487,41 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         return getPkByIndexKeyRange(indexName, tx, idxKey, idxKey);
     }
 
+    @Override
+    public Stream<Key> streamPkByIndex(String indexName, Tx.Read tx, Key indexKey) {
+        checkNotNull(indexKey, "Index key is null");
+        final Store index = getIdx(indexName);
+        if (index == null) {
+            return Stream.empty();
+        }
+        final ByteIterable idxKey = indexKey.toByteIterable();
+        return CursorSpliterator.stream(tx, index,
+                c -> c.getSearchKey(idxKey) != null,
+                Cursor::getNextDup,
+                c -> true,
+                c -> new Key(c.getValue()));
+    }
+
+    @Override
+    public Stream<T> streamByIndex(String indexName, Tx.Read tx, Key indexKey) {
+        return streamPkByIndex(indexName, tx, indexKey)
+                .map(pk -> get(tx, pk))
+                .flatMap(Optional::stream);
+    }
+
+    @Override
+    public boolean hasIndexKey(String indexName, Tx.Read tx, Key indexKey, Key primaryKey) {
+        checkNotNull(indexKey, "Index key is null");
+        verifyKey(primaryKey);
+        final Store index = getIdx(indexName);
+        if (index == null) {
+            return false;
+        }
+        try (Cursor cursor = index.openCursor(castTxn(tx))) {
+            return cursor.getSearchBoth(indexKey.toByteIterable(), primaryKey.toByteIterable());
+        }
+    }
+
     public Map<Key, T> getByIndexLessThan(String indexName, Tx.Read tx, Key indexKey) {
         return values(tx, getPkByIndexLessThan(indexName, tx, indexKey));
     }
@@ -253,6 +542,19 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         return getPkByIndexKeyRange(indexName, tx, idxKey, null);
     }
 
+    @Override
+    public List<Key> keysFrom(Tx.Read tx, Key fromKey, int limit) {
+        final List<Key> keys = new ArrayList<>();
+        try (Cursor cursor = getMainDb().openCursor(castTxn(tx))) {
+            boolean hasNext = fromKey == null ? cursor.getNext() : cursor.getSearchKeyRange(fromKey.toByteIterable()) != null;
+            while (hasNext && keys.size() < limit) {
+                keys.add(new Key(cursor.getKey()));
+                hasNext = cursor.getNext();
+            }
+        }
+        return keys;
+    }
+
     public Map<Key, T> getByIdxDescendingWhere(String indexName, Tx.Read tx, Predicate<T> p) {
         return getOrderedMapWhere(indexName, tx, false, p);
     }
@@ -370,15 +672,11 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
     public XodusIxBase.Sizes sizeInfo(Tx.Read tx) {
         XodusIxBase.Sizes sizes = super.sizeInfo(tx);
         final Map<String, XodusIxBase.Sizes> indexSizes = new HashMap<>();
-        indexes.forEach((name, ignore) -> {
-            Store idx = getIdx(name);
-            AtomicInteger count = new AtomicInteger();
-            AtomicInteger size = new AtomicInteger();
-            indexSizes.put(name, new XodusIxBase.Sizes(count.get(), size.get()));
-        });
+        indexes.forEach((name, idx) -> indexSizes.put(name, sizes(storeSizes.get(idx.getName()))));
         return new Sizes(sizes.getCount(),
                 sizes.getKeysAndValuesBytes(),
-                indexSizes);
+                indexSizes,
+                indexKeysDb == null ? null : sizes(storeSizes.get(indexKeysDb.getName())));
     }
 
 
@@ -386,14 +684,21 @@ public class XodusIxMap<T extends Serializable> extends XodusIxBase<T> implement
         @Getter
         private Map<String, XodusIxBase.Sizes> indexSizes;
 
+        @Getter
+        private XodusIxBase.Sizes indexKeysSizes;
+
         @Getter
         private long totalKeysAndValuesBytes;
 
-        Sizes(int count, long sizeInBytes, Map<String, XodusIxBase.Sizes> indexSizes) {
+        Sizes(int count, long sizeInBytes, Map<String, XodusIxBase.Sizes> indexSizes, XodusIxBase.Sizes indexKeysSizes) {
             super(count, sizeInBytes);
             this.indexSizes = indexSizes.isEmpty() ? null : indexSizes;
+            this.indexKeysSizes = indexKeysSizes;
             totalKeysAndValuesBytes = sizeInBytes;
             indexSizes.forEach((n, s) -> totalKeysAndValuesBytes += s.getKeysAndValuesBytes());
+            if (indexKeysSizes != null) {
+                totalKeysAndValuesBytes += indexKeysSizes.getKeysAndValuesBytes();
+            }
         }
     }
 
@@ -40,8 +40,9 @@ import net.ripe.rpki.validator3.storage.encoding.Coder;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class XodusMultIxMap<T extends Serializable> extends XodusIxBase<T> implements MultIxMap<T> {
 
@@ -55,20 +56,31 @@ public class XodusMultIxMap<T extends Serializable> extends XodusIxBase<T> imple
         return StoreConfig.WITH_DUPLICATES;
     }
 
+    /**
+     * Values are found by their stored bytes, checksum included, so they are always written with the checksum
+     * that existing values were written with.
+     */
+    @Override
+    protected Checksums.Algorithm checksumAlgorithm() {
+        return Checksums.Algorithm.CRC32;
+    }
+
     @Override
     public List<T> get(Tx.Read tx, Key primaryKey) {
-        verifyKey(primaryKey);
-        final List<T> result = new ArrayList<>();
-        try (Cursor cursor = getMainDb().openCursor(castTxn(tx))) {
-            ByteIterable startKey = cursor.getSearchKey(primaryKey.toByteIterable());
-            if (startKey != null) {
-                result.add(getValue(primaryKey, Bytes.toBytes(cursor.getValue())));
-                while (cursor.getNextDup()) {
-                    result.add(getValue(primaryKey, Bytes.toBytes(cursor.getValue())));
-                }
-            }
+        try (Stream<T> values = stream(tx, primaryKey)) {
+            return values.collect(Collectors.toList());
         }
-        return result;
+    }
+
+    @Override
+    public Stream<T> stream(Tx.Read tx, Key primaryKey) {
+        verifyKey(primaryKey);
+        final ByteIterable pk = primaryKey.toByteIterable();
+        return CursorSpliterator.stream(tx, getMainDb(),
+                c -> c.getSearchKey(pk) != null,
+                Cursor::getNextDup,
+                c -> true,
+                c -> getValue(primaryKey, c.getValue()));
     }
 
     @Override
@@ -90,20 +102,35 @@ public class XodusMultIxMap<T extends Serializable> extends XodusIxBase<T> imple
     @Override
     public void put(Tx.Write tx, Key primaryKey, T value) {
         checkKeyAndValue(primaryKey, value);
-        getMainDb().put(castTxn(tx), primaryKey.toByteIterable(), valueWithChecksum(value));
+        final ByteIterable pk = primaryKey.toByteIterable();
+        final ByteIterable val = valueWithChecksum(value);
+        if (getMainDb().put(castTxn(tx), pk, val)) {
+            sizeChanged(tx, getMainDb(), 1, pk.getLength() + val.getLength());
+        }
     }
 
     @Override
     public void delete(Tx.Write tx, Key primaryKey) {
-        getMainDb().delete(castTxn(tx), primaryKey.toByteIterable());
+        final ByteIterable pk = primaryKey.toByteIterable();
+        try (Cursor c = getMainDb().openCursor(castTxn(tx))) {
+            boolean found = c.getSearchKey(pk) != null;
+            while (found) {
+                sizeChanged(tx, getMainDb(), -1, -(pk.getLength() + c.getValue().getLength()));
+                found = c.getNextDup();
+            }
+        }
+        getMainDb().delete(castTxn(tx), pk);
     }
 
     @Override
     public void delete(Tx.Write tx, Key primaryKey, T value) {
         verifyKey(primaryKey);
         try (Cursor c = getMainDb().openCursor(castTxn(tx))) {
-            if (c.getSearchBoth(primaryKey.toByteIterable(), valueWithChecksum(value))) {
+            final ByteIterable pk = primaryKey.toByteIterable();
+            final ByteIterable val = valueWithChecksum(value);
+            if (c.getSearchBoth(pk, val)) {
                 c.deleteCurrent();
+                sizeChanged(tx, getMainDb(), -1, -(pk.getLength() + val.getLength()));
             }
         }
     }
@@ -112,8 +139,11 @@ public class XodusMultIxMap<T extends Serializable> extends XodusIxBase<T> imple
     public void deleteBatch(Tx.Write tx, List<Pair<Key, T>> toDelete) {
         try (Cursor c = getMainDb().openCursor(castTxn(tx))) {
             toDelete.forEach(p -> {
-                if (c.getSearchBoth(p.getKey().toByteIterable(), valueWithChecksum(p.getValue()))) {
+                final ByteIterable pk = p.getKey().toByteIterable();
+                final ByteIterable val = valueWithChecksum(p.getValue());
+                if (c.getSearchBoth(pk, val)) {
                     c.deleteCurrent();
+                    sizeChanged(tx, getMainDb(), -1, -(pk.getLength() + val.getLength()));
                 }
             });
         }
@@ -29,14 +29,20 @@
  */
 package net.ripe.rpki.validator3.storage.xodus;
 
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.Transaction;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.validator3.storage.Tx;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -54,6 +60,7 @@ public abstract class XodusTx implements AutoCloseable {
     @Getter
     private final long id;
     private boolean aborted = false;
+    private final Set<Cursor> openCursors = new LinkedHashSet<>();
 
     private static AtomicLong idseq = new AtomicLong(1);
 
@@ -109,6 +116,22 @@ public abstract class XodusTx implements AutoCloseable {
         Xodus.checkEnv(env);
     }
 
+    /**
+     * Open a cursor that lives as long as this transaction, unless it is closed earlier using
+     * {@link #closeCursor(Cursor)}. This is used by lazy streams that may not be consumed completely.
+     */
+    Cursor openCursor(Store store) {
+        final Cursor cursor = store.openCursor(txn());
+        openCursors.add(cursor);
+        return cursor;
+    }
+
+    void closeCursor(Cursor cursor) {
+        if (openCursors.remove(cursor)) {
+            cursor.close();
+        }
+    }
+
     public void abort() {
         checkEnv();
         txn.abort();
@@ -133,9 +156,20 @@ public abstract class XodusTx implements AutoCloseable {
         @Getter
         private List<Runnable> afterCommitHooks = new ArrayList<>();
 
+        @Getter
+        private final Map<String, StoreSizes.Change> sizeChanges = new HashMap<>();
+
         public synchronized void afterCommit(Runnable r) {
             afterCommitHooks.add(r);
         }
+
+        void sizeChanged(Store store, long count, long bytes) {
+            sizeChanges.computeIfAbsent(store.getName(), n -> new StoreSizes.Change()).add(count, bytes);
+        }
+
+        void truncated(Store store) {
+            sizeChanges.computeIfAbsent(store.getName(), n -> new StoreSizes.Change()).truncated();
+        }
     }
 
     public static class Read extends XodusTx implements Tx.Read {
@@ -156,5 +190,7 @@ public abstract class XodusTx implements AutoCloseable {
 
     @Override
     public void close() {
+        openCursors.forEach(Cursor::close);
+        openCursors.clear();
     }
 }
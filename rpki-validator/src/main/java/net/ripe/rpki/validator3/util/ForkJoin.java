@@ -60,8 +60,8 @@ public class ForkJoin {
      * avoid filling up the spare threads of the fork-join pool and causing
      * {@link java.util.concurrent.RejectedExecutionException}s.
      *
-     * Furthermore, this code should only be called when using the common fork-join pool as it does not have a
-     * semaphore for other fork-join pools.
+     * The semaphore is shared by all fork-join pools, including the pools of the validation executor, which allow
+     * at least as many spare threads as the common pool.
      *
      * @param supplier potentially blocking operation
      * @param <T>      type of result
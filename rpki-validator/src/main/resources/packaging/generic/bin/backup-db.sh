@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+#
+# The BSD License
+#
+# Copyright (c) 2010-2018 RIPE NCC
+# All rights reserved.
+#
+# Redistribution and use in source and binary forms, with or without
+# modification, are permitted provided that the following conditions are met:
+#   - Redistributions of source code must retain the above copyright notice,
+#     this list of conditions and the following disclaimer.
+#   - Redistributions in binary form must reproduce the above copyright notice,
+#     this list of conditions and the following disclaimer in the documentation
+#     and/or other materials provided with the distribution.
+#   - Neither the name of the RIPE NCC nor the names of its contributors may be
+#     used to endorse or promote products derived from this software without
+#     specific prior written permission.
+#
+# THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+# AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+# IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+# ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+# LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+# CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+# SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+# INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+# CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+# ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+# POSSIBILITY OF SUCH DAMAGE.
+#
+
+function usage {
+  echo -e "Usage: $0 [http://<validator-url/] [backup-file]"
+  echo -e ""
+  echo -e "Stores a backup of the database of a running validator in backup-file (a .tar.gz archive)."
+  echo -e "Set rpki.validator.storage.restore.archive to this file to start a new validator from it."
+  exit 1
+}
+
+BASE_URL=$1
+BACKUP_FILE=$2
+CURL=`which curl`
+
+if [[ ! -x ${CURL} ]]; then
+  echo -e "Please install curl to use this script"
+  exit 1
+fi
+
+if [ -z ${BASE_URL} ] || [ -z ${BACKUP_FILE} ]; then
+  usage
+fi
+
+${CURL} --fail --silent --show-error -o "${BACKUP_FILE}" ${BASE_URL}/api/xodus/backup
+if [ $? -ne 0 ]; then
+  rm -f "${BACKUP_FILE}"
+  usage
+fi
@@ -0,0 +1,91 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import net.ripe.rpki.validator3.storage.IxMap;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
+import net.ripe.rpki.validator3.storage.xodus.Xodus;
+import net.ripe.rpki.validator3.storage.xodus.XodusTests;
+import net.ripe.rpki.validator3.util.Sha256;
+import net.ripe.rpki.validator3.util.Time;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares storing a batch of values (with hash keys in random order, like RPKI objects) one by one with storing
+ * them using {@link IxMap#putAll}.
+ */
+@Ignore
+public class BulkInsertBenchmarkTest {
+
+    private static final int BATCH_SIZE = 50_000;
+    private static final int BATCHES = 5;
+
+    @Test
+    public void comparePutAndPutAll() throws Exception {
+        final Xodus xodus = XodusTests.makeXodus(null);
+        final IxMap<String> oneByOne = createMap(xodus, "one-by-one");
+        final IxMap<String> bulk = createMap(xodus, "bulk");
+
+        for (String round : new String[]{"insert", "update", "unchanged"}) {
+            long putTime = 0;
+            long putAllTime = 0;
+            for (int b = 0; b < BATCHES; b++) {
+                final Map<Key, String> values = batch(b, round.equals("insert") ? "" : "-updated");
+                putTime += Time.timed(() -> xodus.writeTx0(tx -> values.forEach((k, v) -> oneByOne.put(tx, k, v))));
+                putAllTime += Time.timed(() -> xodus.writeTx0(tx -> bulk.putAll(tx, values)));
+            }
+            System.out.printf("%-10s put %6dms putAll %6dms%n", round, putTime, putAllTime);
+        }
+    }
+
+    private static IxMap<String> createMap(Xodus xodus, String name) {
+        return xodus.createIxMap(name,
+                ImmutableMap.of(
+                        "first-char", s -> Key.keys(Key.of(s.substring(0, 1))),
+                        "length", s -> Key.keys(Key.of(s.length()))),
+                CoderFactory.stringCoder());
+    }
+
+    private static Map<Key, String> batch(int b, String suffix) {
+        final Map<Key, String> values = new HashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final String value = "value-" + b + "-" + i;
+            values.put(Key.of(Sha256.hash(value.getBytes(StandardCharsets.UTF_8))), value + suffix);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.storage.encoding.custom.Encoded;
+import net.ripe.rpki.validator3.storage.encoding.custom.RpkiObjectCoder;
+import net.ripe.rpki.validator3.util.Time;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares eager decoding of the custom encoding (all fields copied into a map) with the lazy view, both for reading
+ * a single field and for reading all fields.
+ */
+@Ignore
+public class EncodedDecodingBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+    private static final short SHA256_TAG = 32;
+
+    @Test
+    public void compareEagerAndLazyDecoding() throws Exception {
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(
+            ByteStreams.toByteArray(is), ValidationResult.withLocation("roa.roa")));
+        RpkiObjectCoder coder = new RpkiObjectCoder();
+        byte[] bytes = coder.toBytes(roa);
+
+        Set<Short> tags = Encoded.fromByteArray(bytes).getContent().keySet();
+
+        run("eager, single field", () -> Encoded.fromByteArray(bytes).getContent().get(SHA256_TAG));
+        run("lazy, single field", () -> Encoded.view(bytes).get(SHA256_TAG));
+        run("eager, all fields", () -> getAll(Encoded.fromByteArray(bytes).getContent(), tags));
+        run("lazy, all fields", () -> getAll(Encoded.view(bytes), tags));
+    }
+
+    private static int getAll(Map<Short, byte[]> content, Set<Short> tags) {
+        int length = 0;
+        for (Short tag : tags) {
+            length += content.get(tag).length;
+        }
+        return length;
+    }
+
+    private static void run(String name, Runnable decode) {
+        for (int i = 0; i < WARMUP; i++) {
+            decode.run();
+        }
+        long allocatedBefore = allocatedBytes();
+        long time = Time.timed(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                decode.run();
+            }
+        });
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%-20s %6dms %8.1f bytes/op%n", name, time, (double) allocated / ITERATIONS);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
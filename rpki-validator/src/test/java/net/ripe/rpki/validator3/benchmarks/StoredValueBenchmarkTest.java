@@ -0,0 +1,108 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.benchmarks;
+
+import com.google.common.io.ByteStreams;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.storage.IxMap;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
+import net.ripe.rpki.validator3.storage.xodus.Xodus;
+import net.ripe.rpki.validator3.storage.xodus.XodusTests;
+import net.ripe.rpki.validator3.util.Time;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Measures the time and the bytes allocated per get and put of a stored value, including the checksum and the
+ * decoding or encoding of the value.
+ */
+@Ignore
+public class StoredValueBenchmarkTest {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+    private static final int PUTS_PER_TX = 10_000;
+
+    @Test
+    public void getAndPut() throws Exception {
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(
+            ByteStreams.toByteArray(is), ValidationResult.withLocation("roa.roa")));
+
+        final Xodus xodus = XodusTests.makeXodus(null);
+        final IxMap<RpkiObject> objects = xodus.createIxMap("objects", Collections.emptyMap(), CoderFactory.makeCoder(RpkiObject.class));
+        final IxMap<Key> keys = xodus.createIxMap("keys", Collections.emptyMap(), CoderFactory.keyCoder());
+        final Key key = roa.key();
+        xodus.writeTx0(tx -> {
+            objects.put(tx, key, roa);
+            keys.put(tx, key, key);
+        });
+
+        run("get object", n -> xodus.readTx0(tx -> {
+            for (int i = 0; i < n; i++) {
+                objects.get(tx, key);
+            }
+        }));
+        run("get key", n -> xodus.readTx0(tx -> {
+            for (int i = 0; i < n; i++) {
+                keys.get(tx, key);
+            }
+        }));
+        run("put object", n -> {
+            for (int done = 0; done < n; done += PUTS_PER_TX) {
+                xodus.writeTx0(tx -> {
+                    for (int i = 0; i < PUTS_PER_TX; i++) {
+                        objects.put(tx, key, roa);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void run(String name, Consumer<Integer> operations) {
+        operations.accept(WARMUP);
+        long allocatedBefore = allocatedBytes();
+        long time = Time.timed(() -> operations.accept(ITERATIONS));
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%-12s %6dms %8.1f bytes/op%n", name, time, (double) allocated / ITERATIONS);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
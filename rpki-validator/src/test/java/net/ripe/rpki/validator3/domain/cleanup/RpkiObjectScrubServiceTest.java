@@ -0,0 +1,79 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.cleanup;
+
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.IntegrationTest;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.storage.stores.RpkiObjects;
+import net.ripe.rpki.validator3.storage.stores.impl.GenericStorageTest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@IntegrationTest
+public class RpkiObjectScrubServiceTest extends GenericStorageTest {
+
+    @Autowired
+    private RpkiObjectScrubService subject;
+
+    @Autowired
+    private RpkiObjects rpkiObjects;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void should_check_stored_objects() throws IOException {
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(
+            ByteStreams.toByteArray(is), ValidationResult.withLocation("roa.roa")));
+        wtx0(tx -> rpkiObjects.put(tx, roa));
+
+        double scrubbedBefore = meterRegistry.get("rpkivalidator.rpki.objects.scrubbed").counter().count();
+        double valuesScrubbedBefore = meterRegistry.get("rpkivalidator.storage.values.scrubbed").counter().count();
+
+        assertThat(subject.scrub()).isEqualTo(0);
+        assertThat(meterRegistry.get("rpkivalidator.rpki.objects.scrubbed").counter().count()).isGreaterThan(scrubbedBefore);
+        assertThat(meterRegistry.get("rpkivalidator.storage.values.scrubbed").counter().count()).isGreaterThan(valuesScrubbedBefore);
+        assertThat(meterRegistry.get("rpkivalidator.rpki.objects.corrupted").tag("reason", "hash").counter().count()).isEqualTo(0.0);
+        assertThat(meterRegistry.get("rpkivalidator.storage.values.corrupted").counter().count()).isEqualTo(0.0);
+    }
+}
@@ -57,6 +57,7 @@ import javax.security.auth.x500.X500Principal;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory.KEY_PAIR_FACTORY;
@@ -121,6 +122,43 @@ public class ValidationRunCleanupServiceTest extends GenericStorageTest {
         assertThat(oldCount.get()).isEqualTo(0);
     }
 
+    @Test
+    public void shouldCleanUpOldIncompleteValidationRun() {
+
+        final InstantWithoutNanos lastMonth = InstantWithoutNanos.now().minus(Duration.ofDays(30));
+        CertificateTreeValidationRun oldValidationRun = new CertificateTreeValidationRun(testTARef1);
+        oldValidationRun.setCreatedAt(lastMonth);
+        wtx0(tx -> getValidationRuns().add(tx, oldValidationRun));
+
+        CertificateTreeValidationRun recentValidationRun = new CertificateTreeValidationRun(testTARef1);
+        wtx0(tx -> getValidationRuns().add(tx, recentValidationRun));
+
+        AtomicInteger oldCount = subject.cleanupValidationRuns().getLeft();
+        assertThat(oldCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCleanUpOldSuccessfulValidationRunWhenNewerOneSucceeded() {
+
+        final InstantWithoutNanos lastMonth = InstantWithoutNanos.now().minus(Duration.ofDays(30));
+        CertificateTreeValidationRun oldValidationRun = new CertificateTreeValidationRun(testTARef1);
+        oldValidationRun.setCreatedAt(lastMonth);
+        oldValidationRun.setSucceeded();
+        oldValidationRun.setCompletedAt(lastMonth);
+        wtx0(tx -> getValidationRuns().add(tx, oldValidationRun));
+
+        CertificateTreeValidationRun newValidationRun = new CertificateTreeValidationRun(testTARef1);
+        wtx0(tx -> getValidationRuns().add(tx, newValidationRun));
+        newValidationRun.setSucceeded();
+        wtx0(tx -> getValidationRuns().update(tx, newValidationRun));
+
+        AtomicInteger oldCount = subject.cleanupValidationRuns().getLeft();
+        assertThat(oldCount.get()).isEqualTo(1);
+        Optional<CertificateTreeValidationRun> latestSuccessful = getStorage().readTx(tx ->
+                getValidationRuns().findLatestSuccessfulCaTreeValidationRun(tx, testTA1));
+        assertThat(latestSuccessful).contains(newValidationRun);
+    }
+
     @Test
     public void shouldCleanUpOldValidationRunDontDeleteLastSuccessfulPerTA() {
 
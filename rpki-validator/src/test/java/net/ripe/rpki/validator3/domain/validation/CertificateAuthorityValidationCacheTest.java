@@ -0,0 +1,146 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.io.ByteStreams;
+import net.ripe.rpki.commons.crypto.CertificateRepositoryObject;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.domain.validation.ValidatedRpkiObjects.Accumulator;
+import net.ripe.rpki.validator3.domain.validation.ValidatedRpkiObjects.TrustAnchorData;
+import net.ripe.rpki.validator3.storage.data.Key;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CertificateAuthorityValidationCacheTest {
+
+    private static final long TRUST_ANCHOR_ID = 1L;
+    private static final Key CA_1 = Key.of("ca-1");
+    private static final Key CA_2 = Key.of("ca-2");
+    private static final Key MANIFEST = Key.of("manifest");
+
+    private CertificateAuthorityValidationCache cache;
+    private CertificateRepositoryObject roa;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new CertificateAuthorityValidationCache();
+
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        roa = CertificateRepositoryObjectFactory.createCertificateRepositoryObject(ByteStreams.toByteArray(is), newValidationResult("roa.roa"));
+
+        CertificateAuthorityValidationCache.Run first = cache.startRun(TRUST_ANCHOR_ID, true);
+        first.validated(CA_1, cachedResult(Key.of("roa-1"), newValidationResult("ca-1.mft")));
+        first.validated(CA_2, cachedResult(Key.of("roa-2"), newValidationResult("ca-2.mft")));
+        first.complete();
+    }
+
+    @Test
+    public void should_combine_completed_results_with_previous_results_of_others() {
+        CertificateAuthorityValidationCache.Run run = cache.startRun(TRUST_ANCHOR_ID, true);
+        assertThat(run.hasPreviousResults()).isTrue();
+        assertThat(run.previousResultsOfUncompleted(Instant.now()).getKeys()).containsExactlyInAnyOrder(Key.of("roa-1"), Key.of("roa-2"));
+
+        run.completed(CA_1);
+
+        assertThat(run.previousResultsOfUncompleted(Instant.now()).getKeys()).containsExactly(Key.of("roa-2"));
+    }
+
+    @Test
+    public void should_keep_previous_results_of_skipped_certificate_authorities() {
+        CertificateAuthorityValidationCache.Run run = cache.startRun(TRUST_ANCHOR_ID, true);
+        run.validated(CA_1, cachedResult(Key.of("roa-3"), newValidationResult("ca-1.mft")));
+        run.skipped(CA_2);
+
+        assertThat(run.carryOverSkipped(Instant.now()).getKeys()).containsExactly(Key.of("roa-2"));
+        run.complete();
+
+        CertificateAuthorityValidationCache.Run next = cache.startRun(TRUST_ANCHOR_ID, true);
+        assertThat(next.previousResultsOfUncompleted(Instant.now()).getKeys()).containsExactlyInAnyOrder(Key.of("roa-3"), Key.of("roa-2"));
+    }
+
+    @Test
+    public void should_drop_expired_results_of_skipped_certificate_authorities() {
+        CertificateAuthorityValidationCache.Run run = cache.startRun(TRUST_ANCHOR_ID, true);
+        run.validated(CA_1, cachedResult(Key.of("roa-3"), newValidationResult("ca-1.mft")));
+        run.skipped(CA_2);
+
+        Instant later = Instant.now().plus(2, ChronoUnit.HOURS);
+        assertThat(run.previousResultsOfUncompleted(later).getKeys()).isEmpty();
+        assertThat(run.carryOverSkipped(later).getKeys()).isEmpty();
+        run.complete();
+
+        CertificateAuthorityValidationCache.Run next = cache.startRun(TRUST_ANCHOR_ID, true);
+        assertThat(next.lookup(CA_2)).isEmpty();
+        assertThat(next.previousResultsOfUncompleted(Instant.now()).getKeys()).containsExactly(Key.of("roa-3"));
+    }
+
+    @Test
+    public void should_not_reuse_results_with_failures() {
+        ValidationResult failed = newValidationResult("ca-1.mft");
+        failed.error("some.error");
+        CertificateAuthorityValidationCache.CachedResult result = cachedResult(Key.of("roa-1"), failed);
+
+        assertThat(cachedResult(Key.of("roa-1"), newValidationResult("ca-1.mft")).isReusableFor(MANIFEST, Instant.now())).isTrue();
+        assertThat(result.isReusableFor(MANIFEST, Instant.now())).isFalse();
+    }
+
+    @Test
+    public void should_not_reuse_results_when_disabled() {
+        CertificateAuthorityValidationCache.Run run = cache.startRun(TRUST_ANCHOR_ID, false);
+
+        assertThat(run.lookup(CA_1)).isEmpty();
+        assertThat(run.hasPreviousResults()).isTrue();
+    }
+
+    private CertificateAuthorityValidationCache.CachedResult cachedResult(Key objectKey, ValidationResult validationResult) {
+        Accumulator accumulator = new Accumulator();
+        accumulator.add(TrustAnchorData.of(Key.of(TRUST_ANCHOR_ID), "test"), objectKey, roa, ImmutableSortedSet.of("rsync://example.com/roa.roa"));
+        return CertificateAuthorityValidationCache.CachedResult.of(
+                MANIFEST,
+                Key.of("crl"),
+                Instant.now().plus(1, ChronoUnit.HOURS),
+                validationResult,
+                accumulator,
+                Collections.emptyList(),
+                Collections.emptyList()
+        );
+    }
+}
@@ -31,6 +31,7 @@ package net.ripe.rpki.validator3.domain.validation;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
 import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.IpAddress;
 import net.ripe.ipresource.IpRange;
@@ -41,6 +42,7 @@ import net.ripe.rpki.commons.validation.ValidationResult;
 import net.ripe.rpki.commons.validation.ValidationString;
 import net.ripe.rpki.validator3.background.ValidationScheduler;
 import net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory;
+import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RoaPrefix;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
@@ -94,6 +96,9 @@ public class CertificateTreeValidationServiceTest extends GenericStorageTest {
     @Autowired
     private ValidationScheduler validationScheduler;
 
+    @Autowired
+    private MeterRegistry registry;
+
     @Override
     @Before
     public void setUp() throws Exception {
@@ -252,6 +257,62 @@ public class CertificateTreeValidationServiceTest extends GenericStorageTest {
         assertThat(cro).isPresent().hasValueSatisfying(x -> assertThat(x.getSubject()).isEqualTo(new X500Principal("CN=child-ca")));
     }
 
+    @Test
+    public void should_reuse_result_of_unchanged_certificate_authorities() {
+        TrustAnchor ta = wtx(tx -> factory.createTrustAnchor(tx, x -> {
+            TrustAnchorsFactory.CertificateAuthority child = TrustAnchorsFactory.CertificateAuthority.builder()
+                .dn("CN=child-ca")
+                .keyPair(KEY_PAIR_FACTORY.generate())
+                .certificateLocation(TA_CA_REPOSITORY_URI + "child-ca.cer")
+                .resources(IpResourceSet.parse("192.168.128.0/17"))
+                .notifyURI(TA_RRDP_NOTIFY_URI)
+                .manifestURI("rsync://rpki.test/CN=child-ca/child-ca.mft")
+                .repositoryURI("rsync://rpki.test/CN=child-ca/")
+                .crlDistributionPoint("rsync://rpki.test/CN=child-ca/child-ca.crl")
+                .build();
+            x.children(Arrays.asList(child));
+        }));
+
+        wtx0(tx -> {
+            this.getTrustAnchors().add(tx, ta);
+            final Ref<TrustAnchor> trustAnchorRef = this.getTrustAnchors().makeRef(tx, ta.key());
+            RpkiRepository repository = this.getRpkiRepositories().register(tx, trustAnchorRef, TA_RRDP_NOTIFY_URI, RpkiRepository.Type.RRDP);
+            repository.setDownloaded();
+            this.getRpkiRepositories().update(tx, repository);
+        });
+
+        subject.validate(ta.key().asLong());
+        final double reusedBefore = certificateAuthorityCount(ta, "reused");
+        final double validatedBefore = certificateAuthorityCount(ta, "validated");
+        assertThat(validatedBefore).isGreaterThan(0);
+
+        subject.validate(ta.key().asLong());
+
+        // Neither the trust anchor nor the child CA changed, so both results are reused without validating again
+        assertThat(certificateAuthorityCount(ta, "reused") - reusedBefore).isEqualTo(2.0);
+        assertThat(certificateAuthorityCount(ta, "validated") - validatedBefore).isEqualTo(0.0);
+
+        List<CertificateTreeValidationRun> completed = rtx(tx -> this.getValidationRuns().findAll(tx, CertificateTreeValidationRun.class));
+        assertThat(completed).hasSize(2);
+        assertThat(completed).allSatisfy(run -> {
+            assertThat(run.getStatus()).isEqualTo(SUCCEEDED);
+            assertThat(run.getValidationChecks()).isEmpty();
+        });
+
+        Set<Key> first = rtx(tx -> this.getValidationRuns().findAssociatedPks(tx, completed.get(0)));
+        Set<Key> second = rtx(tx -> this.getValidationRuns().findAssociatedPks(tx, completed.get(1)));
+        assertThat(first).hasSize(5);
+        assertThat(second).isEqualTo(first);
+    }
+
+    private double certificateAuthorityCount(TrustAnchor ta, String result) {
+        return registry.get("rpkivalidator.validation.certificate.authorities")
+                .tag("trust_anchor", ta.getLocations().get(0))
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
     @Test
     public void should_report_proper_error_when_repository_is_unavailable() {
         TrustAnchor trustAnchor = wtx(tx -> {
@@ -0,0 +1,86 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
+import net.ripe.rpki.commons.crypto.cms.roa.RoaCms;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecodedObjectCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private DecodedObjectCache decodedObjectCache;
+    private RpkiObject roa;
+
+    @Before
+    public void setUp() throws IOException {
+        registry = new SimpleMeterRegistry();
+        decodedObjectCache = new DecodedObjectCache(10, registry);
+
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        byte[] content = ByteStreams.toByteArray(is);
+        roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, newValidationResult("roa.roa")));
+    }
+
+    @Test
+    public void should_decode_object_only_once() {
+        Optional<RoaCms> first = decodedObjectCache.get(roa, RoaCms.class, "roa.roa");
+        Optional<RoaCms> second = decodedObjectCache.get(roa, RoaCms.class, "roa.roa");
+
+        assertThat(first).isPresent();
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(registry.get("cache.gets").tag("cache", "rpkivalidator.decoded.objects").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("cache.gets").tag("cache", "rpkivalidator.decoded.objects").tag("result", "miss").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void should_report_type_mismatch_for_cached_object() {
+        decodedObjectCache.get(roa, RoaCms.class, "roa.roa");
+
+        ValidationResult validationResult = newValidationResult("roa.mft");
+        Optional<ManifestCms> manifest = decodedObjectCache.get(roa, ManifestCms.class, validationResult);
+
+        assertThat(manifest).isEmpty();
+        assertThat(validationResult.hasFailureForCurrentLocation()).isTrue();
+    }
+}
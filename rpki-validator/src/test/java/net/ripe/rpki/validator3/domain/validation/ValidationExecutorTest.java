@@ -0,0 +1,113 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ValidationExecutorTest {
+
+    private SimpleMeterRegistry registry;
+    private ValidationExecutor validationExecutor;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        validationExecutor = new ValidationExecutor(4, 1, registry);
+    }
+
+    @After
+    public void tearDown() {
+        validationExecutor.shutdown();
+    }
+
+    @Test
+    public void should_run_parallel_streams_on_trust_anchor_pool() {
+        Set<String> threadNames = validationExecutor.executeForTrustAnchor("Some TA", () ->
+            IntStream.range(0, 1000).parallel()
+                .mapToObj(i -> Thread.currentThread().getName())
+                .collect(Collectors.toSet()));
+
+        assertThat(threadNames).allMatch(name -> name.startsWith("validation-Some-TA-"));
+    }
+
+    @Test
+    public void should_propagate_exceptions() {
+        assertThatThrownBy(() -> validationExecutor.execute(() -> {
+            throw new IllegalArgumentException("broken");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessage("broken");
+    }
+
+    @Test
+    public void should_limit_concurrently_validated_trust_anchors() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maximumRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3);
+        Set<Throwable> errors = ConcurrentHashMap.newKeySet();
+
+        List<Thread> threads = IntStream.range(0, 3).mapToObj(i -> new Thread(() -> {
+            try {
+                validationExecutor.executeForTrustAnchor("ta-" + i, () -> {
+                    maximumRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return running.decrementAndGet();
+                });
+            } catch (Throwable t) {
+                errors.add(t);
+            } finally {
+                done.countDown();
+            }
+        })).collect(Collectors.toList());
+        threads.forEach(Thread::start);
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(errors).isEmpty();
+        assertThat(maximumRunning.get()).isEqualTo(1);
+        assertThat(registry.get("rpkivalidator.validation.executor.waiting.trust.anchors").gauge().value()).isEqualTo(0.0);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.domain.validation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.commons.crypto.ValidityPeriod;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificate;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificateBuilder;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.config.ValidationConfig;
+import net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory;
+import net.ripe.rpki.validator3.storage.data.Key;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.x500.X500Principal;
+import java.security.KeyPair;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.ripe.rpki.validator3.domain.RpkiObjectUtils.newValidationResult;
+import static net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory.KEY_PAIR_FACTORY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VerificationResultCacheTest {
+
+    private static final Key OBJECT_KEY = Key.of("object");
+    private static final Key ISSUER_KEY = Key.of("issuer");
+
+    private ValidationConfig validationConfig;
+    private SimpleMeterRegistry registry;
+    private VerificationResultCache verificationResultCache;
+
+    @Before
+    public void setUp() {
+        validationConfig = new ValidationConfig();
+        registry = new SimpleMeterRegistry();
+        verificationResultCache = new VerificationResultCache(validationConfig, 10, registry);
+    }
+
+    @Test
+    public void should_skip_validation_of_object_that_passed_before() {
+        X509ResourceCertificate certificate = certificate(DateTime.now().plusYears(1));
+        AtomicInteger validations = new AtomicInteger();
+
+        verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+        verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+
+        assertThat(validations.get()).isEqualTo(1);
+        assertThat(registry.get("rpkivalidator.verification.results.reused").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("rpkivalidator.verification.signatures.avoided").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void should_validate_again_for_different_issuer() {
+        X509ResourceCertificate certificate = certificate(DateTime.now().plusYears(1));
+        AtomicInteger validations = new AtomicInteger();
+
+        verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+        verificationResultCache.validate(OBJECT_KEY, Key.of("other-issuer"), certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+
+        assertThat(validations.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_not_remember_failed_or_warned_validations() {
+        X509ResourceCertificate certificate = certificate(DateTime.now().plusYears(1));
+        AtomicInteger validations = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> {
+                validations.incrementAndGet();
+                vr.warn("some.warning");
+            });
+        }
+        for (int i = 0; i < 2; i++) {
+            ValidationResult validationResult = newValidationResult("a.cer");
+            verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, validationResult, vr -> {
+                validations.incrementAndGet();
+                vr.error("some.error");
+            });
+            assertThat(validationResult.hasFailures()).isTrue();
+        }
+
+        assertThat(validations.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_always_validate_when_incremental_validation_is_disabled() {
+        validationConfig.setIncrementalValidation(false);
+        X509ResourceCertificate certificate = certificate(DateTime.now().plusYears(1));
+        AtomicInteger validations = new AtomicInteger();
+
+        verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+        verificationResultCache.validate(OBJECT_KEY, ISSUER_KEY, certificate, null, newValidationResult("a.cer"), vr -> validations.incrementAndGet());
+
+        assertThat(validations.get()).isEqualTo(2);
+    }
+
+    private static X509ResourceCertificate certificate(DateTime notValidAfter) {
+        KeyPair keyPair = KEY_PAIR_FACTORY.generate();
+        return new X509ResourceCertificateBuilder()
+            .withResources(IpResourceSet.parse("10.0.0.0/8"))
+            .withIssuerDN(new X500Principal("CN=issuer"))
+            .withSubjectDN(new X500Principal("CN=subject"))
+            .withSerial(TrustAnchorsFactory.nextSerial())
+            .withPublicKey(keyPair.getPublic())
+            .withSigningKeyPair(keyPair)
+            .withValidityPeriod(new ValidityPeriod(DateTime.now().minusDays(1), notValidAfter))
+            .build();
+    }
+}
@@ -34,6 +34,7 @@ import net.ripe.rpki.validator3.IntegrationTest;
 import net.ripe.rpki.validator3.TestObjects;
 import net.ripe.rpki.validator3.domain.ErrorCodes;
 import net.ripe.rpki.validator3.domain.metrics.RrdpMetricsService;
+import net.ripe.rpki.validator3.domain.validation.ValidationExecutor;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Ref;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
@@ -47,6 +48,7 @@ import net.ripe.rpki.validator3.util.Sha256;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -73,10 +75,13 @@ public class RrdpServiceImplTest extends GenericStorageTest {
     @MockBean
     private RrdpMetricsService rrdpMetricsService;
 
+    @Autowired
+    private ValidationExecutor validationExecutor;
+
     @Before
     public void setUp() throws Exception {
         super.setUp();
-        subject = new RrdpServiceImpl(rrdpClient, this.getRpkiObjects(), this.getRpkiRepositories(), getStorage(), rrdpMetricsService);
+        subject = new RrdpServiceImpl(rrdpClient, this.getRpkiObjects(), this.getRpkiRepositories(), getStorage(), rrdpMetricsService, validationExecutor);
     }
 
     @Test
@@ -38,6 +38,7 @@ import org.junit.rules.TemporaryFolder;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -123,6 +124,89 @@ public abstract class IxMapTest {
         }
     }
 
+    @Test
+    public void keysFrom() {
+        wtx0(tx -> {
+            for (int i = 0; i < 10; i++) {
+                ixMap.put(tx, Key.of(i), "v" + i);
+            }
+        });
+
+        rtx0(tx -> {
+            assertEquals(Arrays.asList(Key.of(0), Key.of(1), Key.of(2)), ixMap.keysFrom(tx, null, 3));
+            assertEquals(Arrays.asList(Key.of(8), Key.of(9)), ixMap.keysFrom(tx, Key.of(8), 3));
+            assertEquals(Collections.emptyList(), ixMap.keysFrom(tx, Key.of(10), 3));
+        });
+    }
+
+    @Test
+    public void putAll() {
+        final Map<Key, String> values = new java.util.HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put(Key.of(i), "v" + i);
+        }
+        assertEquals(100, (int) wtx(tx -> ixMap.putAll(tx, values)));
+        assertEquals(0, (int) wtx(tx -> ixMap.putAll(tx, values)));
+
+        values.put(Key.of(5), "a");
+        values.put(Key.of(100), "bbbb");
+        assertEquals(2, (int) wtx(tx -> ixMap.putAll(tx, values)));
+
+        rtx0(tx -> {
+            assertEquals(101, ixMap.keys(tx).size());
+            assertEquals(Optional.of("a"), ixMap.get(tx, Key.of(5)));
+            assertEquals(Collections.singleton(Key.of(5)), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(1)));
+            assertEquals(9, ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(2)).size());
+            assertEquals(Collections.singleton(Key.of(100)), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(4)));
+        });
+
+        wtx0(tx -> ixMap.delete(tx, Key.of(5)));
+        rtx0(tx -> assertEquals(Collections.emptySet(), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(1))));
+    }
+
+    @Test
+    public void streamInKeyOrder() {
+        wtx0(tx -> {
+            for (int i = 9; i >= 0; i--) {
+                ixMap.put(tx, Key.of(i), "v" + (i % 2 == 0 ? "" : "v") + i);
+            }
+        });
+
+        rtx0(tx -> {
+            assertEquals(IntStream.range(0, 10).mapToObj(Key::of).collect(Collectors.toList()),
+                    ixMap.streamKeys(tx).collect(Collectors.toList()));
+            assertEquals(Arrays.asList("v0", "vv1", "v2"),
+                    ixMap.streamValues(tx).limit(3).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(Key.of(1), Key.of(3), Key.of(5), Key.of(7), Key.of(9)),
+                    ixMap.streamPkByIndex(LENGTH_INDEX, tx, intKey(3)).collect(Collectors.toList()));
+            assertEquals(Optional.of("v4"),
+                    ixMap.streamByIndex(LENGTH_INDEX, tx, intKey(2)).filter(v -> v.endsWith("4")).findFirst());
+            assertEquals(0L, ixMap.streamByIndex(LENGTH_INDEX, tx, intKey(4)).count());
+            assertEquals(0L, ixMap.streamByIndex("no-such-index", tx, intKey(2)).count());
+
+            assertTrue(ixMap.hasIndexKey(LENGTH_INDEX, tx, intKey(2), Key.of(0)));
+            assertFalse(ixMap.hasIndexKey(LENGTH_INDEX, tx, intKey(3), Key.of(0)));
+        });
+
+        // Modify the map while a stream that was not consumed completely is still open
+        wtx0(tx -> ixMap.streamKeys(tx).findFirst().ifPresent(k -> ixMap.delete(tx, k)));
+        rtx0(tx -> assertEquals(Optional.of(Key.of(1)), ixMap.streamKeys(tx).findFirst()));
+    }
+
+    @Test
+    public void updateAndDeleteMaintainIndexes() {
+        final Key k = Key.of(1);
+        wtx0(tx -> ixMap.put(tx, k, "a"));
+        wtx0(tx -> ixMap.put(tx, k, "bb"));
+        rtx0(tx -> {
+            assertEquals(Collections.emptySet(), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(1)));
+            assertEquals(Collections.singleton(k), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(2)));
+        });
+
+        wtx0(tx -> ixMap.delete(tx, k));
+        rtx0(tx -> assertEquals(Collections.emptySet(), ixMap.getPkByIndex(LENGTH_INDEX, tx, intKey(2))));
+    }
+
     @Test
     public void putAndDelete() {
         Key ka = putAndGet("a");
@@ -35,9 +35,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 
@@ -81,6 +83,24 @@ public abstract class MultiIxMapTest {
         });
     }
 
+    @Test
+    public void streamValuesOfKey() {
+        final Key k1 = Key.of(1);
+        final Key k2 = Key.of(2);
+        storage.writeTx0(tx -> {
+            multIxMap.put(tx, k2, "c");
+            multIxMap.put(tx, k1, "b");
+            multIxMap.put(tx, k1, "a");
+        });
+
+        storage.readTx0(tx -> {
+            assertEquals(Sets.newHashSet("a", "b"), multIxMap.stream(tx, k1).collect(Collectors.toSet()));
+            assertEquals(Arrays.asList("c"), multIxMap.stream(tx, k2).collect(Collectors.toList()));
+            assertEquals(Collections.emptyList(), multIxMap.stream(tx, Key.of(3)).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(k1, k1, k2), multIxMap.streamKeys(tx).collect(Collectors.toList()));
+        });
+    }
+
     @Test
     public void putAndDelete() {
         final Key k1 = Key.of(UUID.randomUUID());
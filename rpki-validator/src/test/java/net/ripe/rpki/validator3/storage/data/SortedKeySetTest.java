@@ -0,0 +1,80 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.data;
+
+import net.ripe.rpki.validator3.util.Sha256;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SortedKeySetTest {
+
+    @Test
+    public void should_find_all_keys_and_only_those() {
+        List<Key> keys = IntStream.range(0, 1000).mapToObj(i -> Key.of(Sha256.hash(("key-" + i).getBytes()))).collect(Collectors.toList());
+        SortedKeySet set = SortedKeySet.of(SortedKeySet.SHA256_KEY_SIZE, keys);
+
+        assertThat(set.size()).isEqualTo(1000);
+        assertThat(keys).allMatch(set::contains);
+        assertThat(set.contains(Key.of(Sha256.hash("other".getBytes())))).isFalse();
+        assertThat(set.contains(Key.of("short"))).isFalse();
+        assertThat(set.stream().collect(Collectors.toSet())).containsExactlyInAnyOrderElementsOf(keys);
+    }
+
+    @Test
+    public void should_remove_duplicates() {
+        Key key = Key.of(Sha256.hash("key".getBytes()));
+        SortedKeySet set = SortedKeySet.of(SortedKeySet.SHA256_KEY_SIZE, Arrays.asList(key, key));
+
+        assertThat(set.size()).isEqualTo(1);
+        assertThat(SortedKeySet.fromBytes(SortedKeySet.SHA256_KEY_SIZE, set.toBytes()).contains(key)).isTrue();
+    }
+
+    @Test
+    public void should_handle_empty_set() {
+        SortedKeySet set = SortedKeySet.of(SortedKeySet.SHA256_KEY_SIZE, Collections.emptyList());
+
+        assertThat(set.size()).isEqualTo(0);
+        assertThat(set.contains(Key.of(Sha256.hash("key".getBytes())))).isFalse();
+    }
+
+    @Test
+    public void should_reject_keys_of_other_size() {
+        assertThatThrownBy(() -> SortedKeySet.of(SortedKeySet.SHA256_KEY_SIZE, Collections.singletonList(Key.of("short"))))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -34,12 +34,14 @@ import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
 import org.junit.runner.RunWith;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 @RunWith(JUnitQuickcheck.class)
 public class EncodedTest {
@@ -58,4 +60,40 @@ public class EncodedTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Property
+    public void encodeAndView(List<String> s) {
+        if (s != null && s.size() < Short.MAX_VALUE) {
+            final Encoded e = new Encoded();
+            for (short tag = 0; tag < s.size(); tag++) {
+                e.append(tag, s.get(tag).getBytes(StandardCharsets.UTF_8));
+            }
+            final byte[] bytes = e.toByteArray();
+            final Map<Short, byte[]> view = Encoded.view(bytes);
+            assertEquals(s.size(), view.size());
+            for (short tag = 0; tag < s.size(); tag++) {
+                assertEquals(s.get(tag), new String(view.get(tag), StandardCharsets.UTF_8));
+            }
+            assertNull(view.get((short) s.size()));
+            assertEquals(Encoded.fromByteArray(bytes).getContent().keySet(), view.keySet());
+        }
+    }
+
+    @Property
+    public void encodeAndViewAfterPrefix(List<String> s, byte prefix) {
+        if (s != null && s.size() < Short.MAX_VALUE) {
+            final Encoded e = new Encoded();
+            for (short tag = 0; tag < s.size(); tag++) {
+                e.append(tag, s.get(tag).getBytes(StandardCharsets.UTF_8));
+            }
+            final int prefixLength = Math.abs(prefix);
+            final byte[] bytes = e.toByteArray(prefixLength);
+            assertArrayEquals(e.toByteArray(), Arrays.copyOfRange(bytes, prefixLength, bytes.length));
+            final Map<Short, byte[]> view = Encoded.view(bytes, prefixLength, bytes.length - prefixLength);
+            assertEquals(s.size(), view.size());
+            for (short tag = 0; tag < s.size(); tag++) {
+                assertEquals(s.get(tag), new String(view.get(tag), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
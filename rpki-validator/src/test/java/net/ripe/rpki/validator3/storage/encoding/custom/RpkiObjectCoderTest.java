@@ -41,6 +41,7 @@ import net.ripe.rpki.commons.validation.ValidationResult;
 import net.ripe.rpki.validator3.IntegrationTest;
 import net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory;
 import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.util.Sha256;
 import org.joda.time.DateTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -53,7 +54,11 @@ import java.io.InputStream;
 import java.security.KeyPair;
 
 import static net.ripe.rpki.validator3.domain.ta.TrustAnchorsFactory.KEY_PAIR_FACTORY;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringRunner.class)
 @IntegrationTest
@@ -95,4 +100,38 @@ public class RpkiObjectCoderTest {
         assertEquals(rpkiObject, rpkiObject1);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSha256VerifiedAtIngest() throws IOException {
+        InputStream is = this.getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        byte[] content = ByteStreams.toByteArray(is);
+        RpkiObject rpkiObject = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, ValidationResult.withLocation("whatever.roa")));
+
+        RpkiObjectCoder coder = new RpkiObjectCoder();
+        RpkiObject verified = coder.fromBytes(coder.toBytes(rpkiObject));
+        assertTrue(verified.isSha256Verified());
+        assertTrue(verified.hasSha256(Sha256.hash(content)));
+
+        // Objects stored by older versions are hashed again
+        rpkiObject.setSha256Verified(false);
+        RpkiObject unverified = coder.fromBytes(coder.toBytes(rpkiObject));
+        assertFalse(unverified.isSha256Verified());
+        assertTrue(unverified.hasSha256(Sha256.hash(content)));
+        assertFalse(unverified.hasSha256(Sha256.hash("something else".getBytes())));
+    }
+
+    @Test
+    public void testWithoutEncoded() throws IOException {
+        InputStream is = this.getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        byte[] content = ByteStreams.toByteArray(is);
+        RpkiObject rpkiObject = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, ValidationResult.withLocation("whatever.roa")));
+
+        RpkiObjectCoder coder = RpkiObjectCoder.withoutEncoded();
+        RpkiObject metadata = coder.fromBytes(coder.toBytes(rpkiObject));
+        assertNull(metadata.getEncoded());
+        assertArrayEquals(rpkiObject.getSha256(), metadata.getSha256());
+
+        // Records written by older versions contain the encoded object
+        RpkiObject inline = coder.fromBytes(new RpkiObjectCoder().toBytes(rpkiObject));
+        assertEquals(rpkiObject, inline);
+    }
+}
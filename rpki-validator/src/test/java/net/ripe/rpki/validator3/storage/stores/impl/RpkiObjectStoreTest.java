@@ -0,0 +1,91 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.stores.impl;
+
+import com.google.common.io.ByteStreams;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
+import net.ripe.rpki.validator3.IntegrationTest;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@IntegrationTest
+public class RpkiObjectStoreTest extends GenericStorageTest {
+
+    @Test
+    public void should_store_encoded_object_separately() throws IOException {
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        byte[] content = ByteStreams.toByteArray(is);
+        RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, ValidationResult.withLocation("roa.roa")));
+        wtx0(tx -> getRpkiObjects().put(tx, roa, "rsync://example.com/roa.roa"));
+
+        Optional<RpkiObject> stored = rtx(tx -> getRpkiObjects().get(tx, roa.key()));
+        assertThat(stored).contains(roa);
+        assertThat(stored.get().getEncoded()).isEqualTo(content);
+        List<byte[]> encodedRoas = rtx(tx -> getRpkiObjects().streamObjects(tx, RpkiObject.Type.ROA).map(RpkiObject::getEncoded).collect(Collectors.toList()));
+        assertThat(encodedRoas).containsExactly(content);
+
+        wtx0(tx -> getRpkiObjects().delete(tx, roa));
+        Optional<RpkiObject> deleted = rtx(tx -> getRpkiObjects().get(tx, roa.key()));
+        assertThat(deleted).isEmpty();
+    }
+
+    @Test
+    public void should_store_objects_in_bulk() throws IOException {
+        InputStream is = getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa");
+        byte[] content = ByteStreams.toByteArray(is);
+        RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, ValidationResult.withLocation("roa.roa")));
+        wtx0(tx -> getRpkiObjects().putAll(tx, Arrays.asList(
+                Pair.of("rsync://example.com/roa.roa", roa),
+                Pair.of("rsync://example.org/roa.roa", roa))));
+
+        Optional<RpkiObject> stored = rtx(tx -> getRpkiObjects().get(tx, roa.key()));
+        assertThat(stored).contains(roa);
+        assertThat(stored.get().getEncoded()).isEqualTo(content);
+        List<RpkiObject> roas = rtx(tx -> getRpkiObjects().streamObjects(tx, RpkiObject.Type.ROA).collect(Collectors.toList()));
+        assertThat(roas).containsExactly(roa);
+        SortedSet<String> locations = rtx(tx -> getRpkiObjects().getLocations(tx, roa.key()));
+        assertThat(locations).containsExactly("rsync://example.com/roa.roa", "rsync://example.org/roa.roa");
+    }
+}
@@ -29,17 +29,27 @@
  */
 package net.ripe.rpki.validator3.storage.stores.impl;
 
+import com.google.common.io.ByteStreams;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.commons.crypto.util.CertificateRepositoryObjectFactory;
+import net.ripe.rpki.commons.validation.ValidationResult;
 import net.ripe.rpki.validator3.IntegrationTest;
 import net.ripe.rpki.validator3.TestObjects;
+import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.data.Ref;
+import net.ripe.rpki.validator3.storage.data.RpkiObject;
+import net.ripe.rpki.validator3.storage.data.RpkiRepository;
 import net.ripe.rpki.validator3.storage.data.TrustAnchor;
 import net.ripe.rpki.validator3.storage.data.validation.CertificateTreeValidationRun;
+import net.ripe.rpki.validator3.storage.data.validation.RrdpRepositoryValidationRun;
 import net.ripe.rpki.validator3.storage.data.validation.ValidationRun;
+import net.ripe.rpki.validator3.util.Sha256;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -78,6 +88,54 @@ public class ValidationRunsStoreTest extends GenericStorageTest {
         });
     }
 
+    @Test
+    public void testAssociateRpkiObjectKeys() {
+        final TrustAnchor trustAnchor = TestObjects.newTrustAnchor();
+        wtx0(tx -> this.getTrustAnchors().add(tx, trustAnchor));
+
+        final List<Key> keys = Arrays.asList(Key.of(Sha256.hash("a".getBytes())), Key.of(Sha256.hash("b".getBytes())), Key.of(Sha256.hash("a".getBytes())));
+        CertificateTreeValidationRun validationRun = wtx(tx -> {
+            CertificateTreeValidationRun vr = new CertificateTreeValidationRun(this.getTrustAnchors().makeRef(tx, trustAnchor.key()));
+            this.getValidationRuns().add(tx, vr);
+            this.getValidationRuns().associateRpkiObjectKeys(tx, vr, keys);
+            return vr;
+        });
+
+        rtx0(tx -> {
+            assertEquals(new HashSet<>(keys), this.getValidationRuns().findAssociatedPks(tx, validationRun));
+            assertEquals(2, this.getValidationRuns().getObjectCount(tx, validationRun));
+        });
+    }
+
+    @Test
+    public void testRemoveOrphanValidationRunAssociations() throws Exception {
+        final TrustAnchor trustAnchor = TestObjects.newTrustAnchor();
+        wtx0(tx -> this.getTrustAnchors().add(tx, trustAnchor));
+
+        final Ref<TrustAnchor> trustAnchorRef = rtx(tx -> this.getTrustAnchors().makeRef(tx, trustAnchor.key()));
+        final RpkiRepository rpkiRepository = wtx(tx -> this.getRpkiRepositories().register(tx,
+                trustAnchorRef, "https://rrdp.ripe.net/notification.xml", RpkiRepository.Type.RRDP));
+        final Ref<RpkiRepository> rpkiRepositoryRef = rtx(tx -> this.getRpkiRepositories().makeRef(tx, rpkiRepository.key()));
+
+        final byte[] content = ByteStreams.toByteArray(getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa"));
+        final RpkiObject roa = new RpkiObject(CertificateRepositoryObjectFactory.createCertificateRepositoryObject(content, ValidationResult.withLocation("roa.roa")));
+
+        final RrdpRepositoryValidationRun validationRun = wtx(tx -> {
+            RrdpRepositoryValidationRun vr = this.getValidationRuns().add(tx, new RrdpRepositoryValidationRun(rpkiRepositoryRef));
+            this.getRpkiObjects().put(tx, roa, "rsync://example.com/roa.roa");
+            this.getValidationRuns().associate(tx, vr, roa);
+            return vr;
+        });
+
+        assertEquals(0, this.getValidationRuns().removeOrphanValidationRunAssociations());
+        rtx0(tx -> assertEquals(1, this.getValidationRuns().getObjectCount(tx, validationRun)));
+
+        wtx0(tx -> this.getRpkiObjects().delete(tx, roa));
+
+        assertEquals(1, this.getValidationRuns().removeOrphanValidationRunAssociations());
+        rtx0(tx -> assertEquals(0, this.getValidationRuns().getObjectCount(tx, validationRun)));
+    }
+
     @Test
     public void testLatestSuccessful() throws Exception {
 
@@ -0,0 +1,139 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import com.google.common.collect.ImmutableMap;
+import net.ripe.rpki.validator3.storage.IxMap;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GroupCommitTest {
+
+    private static final int THREADS = 8;
+
+    private Xodus xodus;
+    private IxMap<String> ixMap;
+
+    @Before
+    public void setUp() throws Exception {
+        xodus = XodusTests.makeXodus(null);
+        xodus.enableGroupCommit(Duration.ofMillis(20), THREADS);
+        ixMap = xodus.createIxMap("group-commit", ImmutableMap.of(), CoderFactory.stringCoder());
+    }
+
+    @Test
+    public void should_commit_concurrent_transactions_and_run_their_hooks_in_the_submitting_thread() throws Exception {
+        final Set<Integer> hooks = ConcurrentHashMap.newKeySet();
+        final List<Integer> results = runConcurrently(i -> {
+            final Thread submitter = Thread.currentThread();
+            return xodus.writeTx(tx -> {
+                ixMap.put(tx, Key.of(i), "v" + i);
+                tx.afterCommit(() -> {
+                    if (Thread.currentThread() == submitter) {
+                        hooks.add(i);
+                    }
+                });
+                return i;
+            });
+        });
+
+        assertEquals(THREADS, results.size());
+        assertEquals(THREADS, hooks.size());
+        xodus.readTx0(tx -> {
+            for (int i = 0; i < THREADS; i++) {
+                assertEquals("v" + i, ixMap.get(tx, Key.of(i)).get());
+            }
+        });
+    }
+
+    @Test
+    public void should_isolate_failing_and_aborted_transactions() throws Exception {
+        final List<Integer> results = runConcurrently(i -> {
+            try {
+                return xodus.writeTx(tx -> {
+                    ixMap.put(tx, Key.of(i), "v" + i);
+                    if (i == 1) {
+                        throw new IllegalArgumentException("failed");
+                    }
+                    if (i == 2) {
+                        tx.abort();
+                    }
+                    return i;
+                });
+            } catch (IllegalArgumentException e) {
+                return -1;
+            }
+        });
+
+        assertTrue(results.contains(-1));
+        xodus.readTx0(tx -> {
+            assertFalse(ixMap.get(tx, Key.of(1)).isPresent());
+            assertFalse(ixMap.get(tx, Key.of(2)).isPresent());
+            for (int i = 3; i < THREADS; i++) {
+                assertEquals("v" + i, ixMap.get(tx, Key.of(i)).get());
+            }
+        });
+    }
+
+    private List<Integer> runConcurrently(IntFunction<Integer> task) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final int n = i;
+                futures.add(executor.submit(() -> task.apply(n)));
+            }
+            final List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The BSD License
+ *
+ * Copyright (c) 2010-2018 RIPE NCC
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *   - Neither the name of the RIPE NCC nor the names of its contributors may be
+ *     used to endorse or promote products derived from this software without
+ *     specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ripe.rpki.validator3.storage.xodus;
+
+import com.google.common.collect.ImmutableMap;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Environments;
+import net.ripe.rpki.validator3.storage.IxMap;
+import net.ripe.rpki.validator3.storage.data.Key;
+import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class XodusBackupTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testBackupAndRestore() throws Exception {
+        final Xodus xodus = XodusTests.makeXodus(null);
+        final IxMap<String> ixMap = xodus.createIxMap("test", ImmutableMap.of("value", s -> Key.keys(Key.of(s))), CoderFactory.makeCoder(String.class));
+        xodus.writeTx0(tx -> {
+            ixMap.put(tx, Key.of(1L), "one");
+            ixMap.put(tx, Key.of(2L), "two");
+        });
+
+        final ByteArrayOutputStream backup = new ByteArrayOutputStream();
+        xodus.backup(backup);
+        // Not part of the backup
+        xodus.writeTx0(tx -> ixMap.put(tx, Key.of(3L), "three"));
+
+        final File restored = tmp.newFolder();
+        XodusBackup.restore(new ByteArrayInputStream(backup.toByteArray()), restored);
+
+        final Environment env = Environments.newInstance(restored);
+        try {
+            final Xodus restoredXodus = new Xodus() {
+                @Override
+                protected Environment getEnv() {
+                    return env;
+                }
+            };
+            final IxMap<String> restoredMap = restoredXodus.createIxMap("test", ImmutableMap.of("value", s -> Key.keys(Key.of(s))), CoderFactory.makeCoder(String.class));
+            assertEquals(Optional.of("one"), restoredXodus.readTx(tx -> restoredMap.get(tx, Key.of(1L))));
+            assertEquals(Optional.of("two"), restoredXodus.readTx(tx -> restoredMap.get(tx, Key.of(2L))));
+            assertEquals(Optional.empty(), restoredXodus.readTx(tx -> restoredMap.get(tx, Key.of(3L))));
+            assertEquals(2, restoredXodus.readTx(tx -> restoredMap.sizeInfo(tx)).getCount());
+        } finally {
+            env.close();
+        }
+    }
+
+    @Test
+    public void testFailedRestoreLeavesNoPartialDatabase() throws Exception {
+        final Xodus xodus = XodusTests.makeXodus(null);
+        final IxMap<String> ixMap = xodus.createIxMap("test", ImmutableMap.of(), CoderFactory.makeCoder(String.class));
+        xodus.writeTx0(tx -> ixMap.put(tx, Key.of(1L), "one"));
+        final ByteArrayOutputStream backup = new ByteArrayOutputStream();
+        xodus.backup(backup);
+        final byte[] truncated = Arrays.copyOf(backup.toByteArray(), backup.size() / 2);
+
+        final File directory = tmp.newFolder("db");
+        try {
+            XodusBackup.restore(new ByteArrayInputStream(truncated), directory);
+            fail("Expected the truncated backup to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, directory.list().length);
+        assertFalse(new File(tmp.getRoot(), "db.restoring").exists());
+
+        // A later restore of the complete backup still succeeds
+        XodusBackup.restore(new ByteArrayInputStream(backup.toByteArray()), directory);
+        assertTrue(directory.list().length > 0);
+        assertFalse(new File(tmp.getRoot(), "db.restoring").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRestoreOnlyIntoEmptyDirectory() throws Exception {
+        final Xodus xodus = XodusTests.makeXodus(null);
+        final ByteArrayOutputStream backup = new ByteArrayOutputStream();
+        xodus.backup(backup);
+
+        final File directory = tmp.newFolder();
+        new File(directory, "00000000000.xd").createNewFile();
+        XodusBackup.restore(new ByteArrayInputStream(backup.toByteArray()), directory);
+    }
+}
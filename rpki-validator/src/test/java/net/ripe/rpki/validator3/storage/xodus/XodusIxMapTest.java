@@ -31,8 +31,19 @@ package net.ripe.rpki.validator3.storage.xodus;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.StoreConfig;
 import jetbrains.exodus.env.Transaction;
+import net.ripe.rpki.validator3.storage.Bytes;
+import net.ripe.rpki.validator3.storage.Compression;
+import net.ripe.rpki.validator3.storage.IxBase;
+import net.ripe.rpki.validator3.storage.IxMap;
 import net.ripe.rpki.validator3.storage.IxMapTest;
+import net.ripe.rpki.validator3.storage.MultIxMap;
+import net.ripe.rpki.validator3.storage.Storage;
 import net.ripe.rpki.validator3.storage.Tx;
 import net.ripe.rpki.validator3.storage.data.Key;
 import net.ripe.rpki.validator3.storage.encoding.CoderFactory;
@@ -42,12 +53,16 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import static org.junit.Assert.*;
 
@@ -61,6 +76,10 @@ public class XodusIxMapTest extends IxMapTest {
     @Before
     public void setUp() throws Exception {
         xodus = XodusTests.makeXodus(tmp.newFolder().getAbsolutePath());
+        createTestMap();
+    }
+
+    private void createTestMap() {
         ixMap = xodus.createIxMap("test",
                 ImmutableMap.of(
                         LENGTH_INDEX, IxMapTest::stringLen,
@@ -105,6 +124,228 @@ public class XodusIxMapTest extends IxMapTest {
         assertEquals(ImmutableMap.of(Key.of(1L), "aa"), xodus.readTx(tx -> ixMap.getByIndex("lenPlus1", tx, intKey(3))));
         assertEquals(ImmutableMap.of(Key.of(2L), "aBa"), xodus.readTx(tx -> ixMap.getByIndex("lenPlus1", tx, intKey(4))));
         assertEquals(ImmutableMap.of(Key.of(2L), "aBa"), xodus.readTx(tx -> ixMap.getByIndex("lower", tx, Key.of("aba"))));
+
+        // The rebuilt indexes are found when the stores are opened again
+        assertEquals(2, storeSize("testReindex-idx-lower").getCount());
+        assertEquals(2, storeSize("testReindex-index-keys").getCount());
+        assertEquals(storeSize("testReindex-index-keys"), ((XodusIxMap.Sizes) rtx(tx -> ixMap.sizeInfo(tx))).getIndexKeysSizes());
+    }
+
+    @Test
+    public void testResumeReindex() {
+        ixMap = xodus.createIxMap("testResumeReindex",
+                ImmutableMap.of("case", s -> Key.keys(Key.of(s.toLowerCase()))),
+                CoderFactory.makeCoder(String.class));
+        wtx0(tx -> {
+            ixMap.put(tx, Key.of(1L), "a");
+            ixMap.put(tx, Key.of(2L), "b");
+            ixMap.put(tx, Key.of(3L), "c");
+        });
+
+        // Pretend a reindex was interrupted after the first two values had been indexed again
+        final Xodus.ReindexProgress progress = new Xodus.ReindexProgress();
+        progress.setStarted(true);
+        progress.setLastKey(Key.of(2L).toString());
+        progress.setProcessed(2);
+        xodus.getEnv().executeInTransaction(txn -> xodus.saveReindexProgress(txn, "testResumeReindex", progress));
+
+        ixMap = xodus.createIxMap("testResumeReindex",
+                ImmutableMap.of("case", s -> Key.keys(Key.of(s.toUpperCase()))),
+                CoderFactory.makeCoder(String.class));
+
+        assertEquals(ImmutableMap.of(Key.of(1L), "a"), xodus.readTx(tx -> ixMap.getByIndex("case", tx, Key.of("a"))));
+        assertEquals(ImmutableMap.of(), xodus.readTx(tx -> ixMap.getByIndex("case", tx, Key.of("A"))));
+        assertEquals(ImmutableMap.of(Key.of(3L), "c"), xodus.readTx(tx -> ixMap.getByIndex("case", tx, Key.of("C"))));
+        assertFalse(xodus.loadReindexProgress("testResumeReindex").isPresent());
+        assertEquals(3L, xodus.getReindexedEntryCount());
+        assertTrue(xodus.getReindexStatus().get("testResumeReindex").startsWith("completed, 3 values indexed"));
+    }
+
+    @Test
+    public void testDropAllIndexes() {
+        ixMap = xodus.createIxMap("testDropAllIndexes",
+                ImmutableMap.of("len", IxMapTest::stringLen),
+                CoderFactory.makeCoder(String.class));
+        wtx0(tx -> {
+            ixMap.put(tx, Key.of(1L), "a");
+            ixMap.put(tx, Key.of(2L), "bb");
+        });
+
+        ixMap = xodus.createIxMap("testDropAllIndexes", ImmutableMap.of(), CoderFactory.makeCoder(String.class));
+
+        Set<String> dbNames = new HashSet<>(rtx(tx -> xodus.getEnv().getAllStoreNames((Transaction) tx.txn())));
+        assertTrue(dbNames.contains("testDropAllIndexes-main"));
+        assertFalse(dbNames.contains("testDropAllIndexes-idx-len"));
+        assertFalse(dbNames.contains("testDropAllIndexes-index-keys"));
+        assertFalse(xodus.loadReindexProgress("testDropAllIndexes").isPresent());
+
+        assertEquals(Optional.of("a"), xodus.readTx(tx -> ixMap.get(tx, Key.of(1L))));
+        wtx0(tx -> ixMap.put(tx, Key.of(3L), "ccc"));
+        wtx0(tx -> ixMap.delete(tx, Key.of(2L)));
+        assertEquals(Sets.newHashSet(Key.of(1L), Key.of(3L)), xodus.readTx(tx -> ixMap.keys(tx)));
+    }
+
+    @Test
+    public void testSizesAreKeptUpToDate() {
+        wtx0(tx -> {
+            ixMap.put(tx, Key.of(1L), "abc");
+            ixMap.put(tx, Key.of(2L), "abcd");
+            ixMap.put(tx, Key.of(3L), "x");
+        });
+        wtx0(tx -> ixMap.put(tx, Key.of(2L), "xyzzy"));
+        wtx0(tx -> ixMap.putAll(tx, ImmutableMap.of(Key.of(3L), "yx", Key.of(4L), "hello")));
+        wtx0(tx -> ixMap.delete(tx, Key.of(1L)));
+        assertSizesMatchStores();
+
+        // The sizes are stored, a new instance of the map does not count them again
+        createTestMap();
+        assertSizesMatchStores();
+
+        wtx0(tx -> ixMap.clear(tx));
+        assertSizesMatchStores();
+        assertEquals(0, rtx(tx -> ixMap.sizeInfo(tx)).getCount());
+
+        final MultIxMap<String> multIxMap = xodus.createMultIxMap("testMult", CoderFactory.makeCoder(String.class));
+        wtx0(tx -> {
+            multIxMap.put(tx, Key.of(1L), "a");
+            multIxMap.put(tx, Key.of(1L), "bb");
+            multIxMap.put(tx, Key.of(1L), "bb");
+            multIxMap.put(tx, Key.of(2L), "ccc");
+            multIxMap.put(tx, Key.of(3L), "dddd");
+        });
+        wtx0(tx -> {
+            multIxMap.delete(tx, Key.of(1L));
+            multIxMap.delete(tx, Key.of(2L), "ccc");
+        });
+        assertEquals(storeSize("testMult-main"), rtx(tx -> multIxMap.sizeInfo(tx)));
+        assertEquals(1, rtx(tx -> multIxMap.sizeInfo(tx)).getCount());
+    }
+
+    @Test
+    public void testChecksums() {
+        // A value stored with the original CRC32 checksum
+        final byte[] encoded = CoderFactory.makeCoder(String.class).toBytes("legacy");
+        final CRC32 crc32 = new CRC32();
+        crc32.update(encoded);
+        final byte[] legacy = ByteBuffer.allocate(Long.BYTES + encoded.length).putLong(crc32.getValue()).put(encoded).array();
+        xodus.getEnv().executeInTransaction(txn -> xodus.getEnv().openStore("test-main", StoreConfig.USE_EXISTING, txn)
+                .put(txn, Key.of(1L).toByteIterable(), new ArrayByteIterable(legacy)));
+        assertEquals(Optional.of("legacy"), rtx(tx -> ixMap.get(tx, Key.of(1L))));
+
+        wtx0(tx -> ixMap.put(tx, Key.of(2L), "new"));
+        assertEquals(Optional.of("new"), rtx(tx -> ixMap.get(tx, Key.of(2L))));
+        final Storage.ChecksumScrub scrub = xodus.scrubChecksums(1000);
+        assertEquals(2, scrub.getChecked());
+        assertEquals(0, scrub.getCorrupted());
+        assertTrue(scrub.isCompleted());
+
+        // Corrupt the value of the new key
+        xodus.getEnv().executeInTransaction(txn -> {
+            final Store store = xodus.getEnv().openStore("test-main", StoreConfig.USE_EXISTING, txn);
+            final byte[] stored = Bytes.toBytes(store.get(txn, Key.of(2L).toByteIterable()));
+            stored[stored.length - 1] ^= 1;
+            store.put(txn, Key.of(2L).toByteIterable(), new ArrayByteIterable(stored));
+        });
+        assertEquals(1, xodus.scrubChecksums(1000).getCorrupted());
+        try {
+            rtx(tx -> ixMap.get(tx, Key.of(2L)));
+            fail("Corrupted value was read");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("corrupted"));
+        }
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        final IxMap<String> compressed = xodus.createIxMap("testCompression", ImmutableMap.of(),
+                CoderFactory.stringCoder(), Compression.deflate(100));
+        final String large = String.join(",", Collections.nCopies(100, "repeated"));
+        wtx0(tx -> {
+            compressed.put(tx, Key.of(1L), large);
+            compressed.put(tx, Key.of(2L), "small");
+        });
+        assertEquals(Optional.of(large), rtx(tx -> compressed.get(tx, Key.of(1L))));
+        assertEquals(Optional.of("small"), rtx(tx -> compressed.get(tx, Key.of(2L))));
+        assertTrue(storedValue("testCompression-main", Key.of(1L)).length < large.length() / 10);
+        assertEquals(Long.BYTES + "small".length(), storedValue("testCompression-main", Key.of(2L)).length);
+
+        // Updating with the same value does not have to write it again
+        final int changed = wtx(tx -> compressed.putAll(tx, ImmutableMap.of(Key.of(1L), large)));
+        assertEquals(0, changed);
+
+        final byte[] roa = ByteStreams.toByteArray(getClass().getResourceAsStream("/557B4C46969B11E681906146C4F9AE02.roa"));
+        final IxMap<byte[]> der = xodus.createIxMap("testCompressionDer", ImmutableMap.of(),
+                CoderFactory.bytesCoder(), Compression.deflateDer(100));
+        wtx0(tx -> der.put(tx, Key.of(1L), roa));
+        assertArrayEquals(roa, rtx(tx -> der.get(tx, Key.of(1L))).get());
+        assertTrue(storedValue("testCompressionDer-main", Key.of(1L)).length < roa.length);
+        assertEquals(0, xodus.scrubChecksums(1000).getCorrupted());
+    }
+
+    @Test
+    public void testCorruptedCompressedLengthIsRejected() {
+        xodus.setChecksums(new Checksums(Checksums.Algorithm.CRC32C, 0.0));
+        final IxMap<String> compressed = xodus.createIxMap("testCorruptedLength", ImmutableMap.of(),
+                CoderFactory.stringCoder(), Compression.deflate(100));
+        wtx0(tx -> compressed.put(tx, Key.of(1L), String.join(",", Collections.nCopies(100, "repeated"))));
+
+        // Claim an uncompressed length of 2 GB, the checksum is not verified on read
+        final byte[] stored = storedValue("testCorruptedLength-main", Key.of(1L));
+        ByteBuffer.wrap(stored).putInt(Long.BYTES + 1, Integer.MAX_VALUE);
+        xodus.getEnv().executeInTransaction(txn -> xodus.getEnv().openStore("testCorruptedLength-main", StoreConfig.USE_EXISTING, txn)
+                .put(txn, Key.of(1L).toByteIterable(), new ArrayByteIterable(stored)));
+
+        try {
+            rtx(tx -> compressed.get(tx, Key.of(1L)));
+            fail("Expected the corrupted value to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("is corrupted"));
+        }
+        assertEquals(1, xodus.scrubChecksums(1000).getCorrupted());
+    }
+
+    private byte[] storedValue(String storeName, Key key) {
+        return xodus.getEnv().computeInReadonlyTransaction(txn -> Bytes.toBytes(
+                xodus.getEnv().openStore(storeName, StoreConfig.USE_EXISTING, txn).get(txn, key.toByteIterable())));
+    }
+
+    @Test
+    public void testScrubContinuesWhereItStopped() {
+        wtx0(tx -> {
+            for (long i = 0; i < 5; i++) {
+                ixMap.put(tx, Key.of(i), "value" + i);
+            }
+        });
+        long checked = 0;
+        Storage.ChecksumScrub scrub;
+        do {
+            scrub = xodus.scrubChecksums(2);
+            assertTrue(scrub.getChecked() <= 2);
+            checked += scrub.getChecked();
+        } while (!scrub.isCompleted());
+        assertEquals(5, checked);
+    }
+
+    private void assertSizesMatchStores() {
+        final XodusIxMap.Sizes sizes = (XodusIxMap.Sizes) rtx(tx -> ixMap.sizeInfo(tx));
+        assertEquals(storeSize("test-main"), new IxBase.Sizes(sizes.getCount(), sizes.getKeysAndValuesBytes()));
+        assertEquals(storeSize("test-idx-" + LENGTH_INDEX), sizes.getIndexSizes().get(LENGTH_INDEX));
+        assertEquals(storeSize("test-idx-" + PAIRS_INDEX), sizes.getIndexSizes().get(PAIRS_INDEX));
+        assertEquals(storeSize("test-index-keys"), sizes.getIndexKeysSizes());
+    }
+
+    private IxBase.Sizes storeSize(String storeName) {
+        return xodus.getEnv().computeInReadonlyTransaction(txn -> {
+            int count = 0;
+            long bytes = 0;
+            try (Cursor c = xodus.getEnv().openStore(storeName, StoreConfig.USE_EXISTING, txn).openCursor(txn)) {
+                while (c.getNext()) {
+                    count++;
+                    bytes += c.getKey().getLength() + c.getValue().getLength();
+                }
+            }
+            return new IxBase.Sizes(count, bytes);
+        });
     }
 
     @Override